@@ -0,0 +1,25 @@
+-- Claims the nights of the reservations made before the reservation_nights table existed
+-- MySQL 5.7 has no recursive queries, so the nights come from a series of 0 to 999 days built by joining digits.
+-- Run it with the application stopped. It fails on the primary key if two existing reservations overlap: list them
+-- with the query at the end, fix them and run it again. The nights already claimed by their reservation are skipped.
+
+INSERT INTO reservation_nights (night, reservation_id)
+SELECT r.arrival_date + INTERVAL s.day DAY, r.id
+FROM reservations r
+JOIN (
+  SELECT units.d + tens.d * 10 + hundreds.d * 100 AS day
+  FROM (SELECT 0 AS d UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4
+        UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9) units
+  CROSS JOIN (SELECT 0 AS d UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4
+        UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9) tens
+  CROSS JOIN (SELECT 0 AS d UNION ALL SELECT 1 UNION ALL SELECT 2 UNION ALL SELECT 3 UNION ALL SELECT 4
+        UNION ALL SELECT 5 UNION ALL SELECT 6 UNION ALL SELECT 7 UNION ALL SELECT 8 UNION ALL SELECT 9) hundreds
+) s ON s.day < DATEDIFF(r.departure_date, r.arrival_date)
+WHERE NOT EXISTS (
+  SELECT 1 FROM reservation_nights n
+  WHERE n.night = r.arrival_date + INTERVAL s.day DAY AND n.reservation_id = r.id
+);
+
+-- Overlapping reservations, which can't both claim their nights
+-- SELECT a.id, b.id FROM reservations a JOIN reservations b
+--   ON a.id < b.id AND a.arrival_date < b.departure_date AND b.arrival_date < a.departure_date;
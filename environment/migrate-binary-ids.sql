@@ -0,0 +1,15 @@
+-- Converts the reservation ids of an existing database from varchar(36) to binary(16)
+-- The existing UUIDs keep their value, so they are still shown and accepted in their usual form
+
+ALTER TABLE reservation_nights ADD COLUMN reservation_bin binary(16) NULL;
+UPDATE reservation_nights SET reservation_bin = UNHEX(REPLACE(reservation_id, '-', ''));
+DROP INDEX night_reservation ON reservation_nights;
+ALTER TABLE reservation_nights DROP COLUMN reservation_id;
+ALTER TABLE reservation_nights CHANGE COLUMN reservation_bin reservation_id binary(16) NOT NULL;
+CREATE INDEX night_reservation ON reservation_nights(reservation_id);
+
+ALTER TABLE reservations ADD COLUMN id_bin binary(16) NULL;
+UPDATE reservations SET id_bin = UNHEX(REPLACE(id, '-', ''));
+ALTER TABLE reservations DROP PRIMARY KEY, DROP COLUMN id;
+ALTER TABLE reservations CHANGE COLUMN id_bin id binary(16) NOT NULL FIRST;
+ALTER TABLE reservations ADD PRIMARY KEY (id);
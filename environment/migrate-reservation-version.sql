@@ -0,0 +1,2 @@
+-- Adds the version of the reservations, incremented on every update and used as their ETag
+ALTER TABLE reservations ADD COLUMN version bigint DEFAULT 0 NOT NULL;
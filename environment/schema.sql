@@ -4,13 +4,40 @@ GRANT ALL ON campsite.* TO 'campsite'@'localhost' IDENTIFIED BY 'campsite';
 FLUSH PRIVILEGES;
 
 CREATE TABLE reservations (
-  id varchar(36) NOT NULL,
+  id binary(16) NOT NULL,
   guest_name varchar(256) DEFAULT NULL,
   guest_mail varchar(256) DEFAULT NULL,
   arrival_date date DEFAULT NULL,
   departure_date date DEFAULT NULL,
+  version bigint DEFAULT 0 NOT NULL,
   PRIMARY KEY (id)
 ) ENGINE=InnoDB DEFAULT CHARSET=latin1;
 
-CREATE INDEX arrival ON reservations(arrival_date);
-CREATE INDEX departure ON reservations(departure_date);
\ No newline at end of file
+-- Covers the queries that only need the dates, and the ones filtering by arrival date
+CREATE INDEX arrival_departure ON reservations(arrival_date, departure_date);
+CREATE INDEX departure ON reservations(departure_date);
+
+CREATE TABLE reservation_nights (
+  night date NOT NULL,
+  reservation_id binary(16) NOT NULL,
+  PRIMARY KEY (night)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+CREATE INDEX night_reservation ON reservation_nights(reservation_id);
+
+CREATE TABLE calendar_days (
+  day date NOT NULL,
+  PRIMARY KEY (day)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+-- Responses of the requests made with an Idempotency-Key, used when campsite.idempotency.store is jdbc
+CREATE TABLE idempotency_keys (
+  idempotency_key varchar(255) NOT NULL,
+  fingerprint char(64) NOT NULL,
+  status int NOT NULL,
+  body blob DEFAULT NULL,
+  expires_at bigint NOT NULL,
+  PRIMARY KEY (idempotency_key)
+) ENGINE=InnoDB DEFAULT CHARSET=latin1;
+
+CREATE INDEX idempotency_expires_at ON idempotency_keys(expires_at);
\ No newline at end of file
@@ -0,0 +1,90 @@
+package com.campsite.benchmark;
+
+import com.campsite.availability.AvailabilityResource;
+import com.campsite.availability.AvailabilityService;
+import com.campsite.availability.FreeIntervalIndex;
+import com.campsite.reservation.ReservationIdGenerator;
+import com.campsite.reservation.ReservationIds;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Availability of one month picked at random in calendars of different sizes
+ *
+ * The calendar starts far from today so it doesn't overlap the seeded reservations: every reservation takes
+ * two nights and leaves the third one free. The availability cache can be turned off (size 0) to measure
+ * the index alone.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AvailabilityBenchmark {
+
+    private static final LocalDate CALENDAR_START = LocalDate.of(2100, 1, 1);
+
+    @Param({"10", "1000", "100000"})
+    public int reservations;
+
+    @Param({"0", "1024"})
+    public int cacheSize;
+
+    private ConfigurableApplicationContext context;
+
+    private AvailabilityService availabilityService;
+
+    private int calendarDays;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start("--campsite.availability.cache.max-size=" + cacheSize);
+        availabilityService = context.getBean(AvailabilityService.class);
+
+        ReservationIdGenerator ids = context.getBean(ReservationIdGenerator.class);
+        List<Object[]> rows = new ArrayList<>(reservations);
+        for (int i = 0; i < reservations; i++) {
+            LocalDate arrivalDate = CALENDAR_START.plusDays(3L * i);
+            rows.add(new Object[] { ReservationIds.toBytes(ids.next()), "Guest " + i, "guest" + i + "@gmail.com",
+                    Date.valueOf(arrivalDate), Date.valueOf(arrivalDate.plusDays(2)) });
+        }
+        context.getBean(JdbcTemplate.class).batchUpdate(
+                "INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date) VALUES (?, ?, ?, ?, ?)", rows);
+        context.getBean(FreeIntervalIndex.class).rebuild();
+
+        calendarDays = 3 * reservations;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public AvailabilityResource getAvailability() {
+        //Ranges starting in the last month of the calendar are cut at its end
+        LocalDate from = CALENDAR_START.plusDays(ThreadLocalRandom.current().nextInt(calendarDays));
+        return availabilityService.getAvailability(from, from.plusMonths(1));
+    }
+}
@@ -0,0 +1,43 @@
+package com.campsite.benchmark;
+
+import com.campsite.UpgradeApplication;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Starts the application on an in-memory H2 database for the benchmarks
+ */
+final class BenchmarkContexts {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    private BenchmarkContexts() {
+    }
+
+    /**
+     * Starts a context without web server on a new database
+     *
+     * @param properties Extra properties, as command line arguments (--name=value)
+     * @return Application context. It must be closed when the benchmark finishes
+     */
+    static ConfigurableApplicationContext start(String... properties) {
+        //Properties are passed as command line arguments to override the ones of the test profile
+        List<String> args = new ArrayList<>();
+        args.add("--spring.datasource.url=jdbc:h2:mem:jmh-" + DATABASES.incrementAndGet() + ";DB_CLOSE_DELAY=-1");
+        args.add("--spring.jpa.show-sql=false");
+        args.add("--spring.jmx.enabled=false");
+        args.add("--logging.level.root=WARN");
+        args.addAll(Arrays.asList(properties));
+
+        return new SpringApplicationBuilder(UpgradeApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run(args.toArray(new String[0]));
+    }
+}
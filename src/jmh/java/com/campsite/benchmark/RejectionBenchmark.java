@@ -0,0 +1,83 @@
+package com.campsite.benchmark;
+
+import com.campsite.exception.ApiError;
+import com.campsite.exception.ApiErrors;
+import com.campsite.exception.ErrorMessages;
+import com.campsite.exception.NotAvailableException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.HttpStatus;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejection of a reservation, from the exception thrown in the service to the error of the response
+ * The stack trace one replays how the rejections were built before: an exception filling its stack trace and an error
+ * built field by field, with the path taken from the request description with a regular expression. The frames are
+ * the depth of the call stack when the exception is thrown, a request through Spring MVC is about a hundred.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RejectionBenchmark {
+
+    private static final String DESCRIPTION = "uri=/campsite/reservations";
+
+    @Param({"10", "100"})
+    private int frames;
+
+    @Benchmark
+    public ApiError stackless() {
+        try {
+            return throwAt(frames, () -> {
+                throw new NotAvailableException(ErrorMessages.NOT_AVAILABLE.getMessage());
+            });
+        } catch (NotAvailableException e) {
+            return ApiErrors.rejection(HttpStatus.BAD_REQUEST, e.getMessage(), DESCRIPTION.substring(4));
+        }
+    }
+
+    @Benchmark
+    public ApiError stackTrace() {
+        try {
+            return throwAt(frames, () -> {
+                throw new StackTraceException(ErrorMessages.NOT_AVAILABLE.getMessage());
+            });
+        } catch (StackTraceException e) {
+            ApiError error = new ApiError();
+            error.setStatus(HttpStatus.BAD_REQUEST.value());
+            error.setMessage(e.getMessage());
+            error.setError("Bad request");
+            error.setPath(DESCRIPTION.replaceAll("uri=", ""));
+            error.setTimestamp(LocalDateTime.now());
+            return error;
+        }
+    }
+
+    private static ApiError throwAt(int depth, Runnable thrower) {
+        if (depth == 0) {
+            thrower.run();
+            return null;
+        }
+        return throwAt(depth - 1, thrower);
+    }
+
+    private static class StackTraceException extends RuntimeException {
+
+        private StackTraceException(String message) {
+            super(message);
+        }
+    }
+}
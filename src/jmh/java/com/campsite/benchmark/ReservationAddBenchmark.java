@@ -0,0 +1,126 @@
+package com.campsite.benchmark;
+
+import com.campsite.exception.CalendarBusyException;
+import com.campsite.exception.NotAvailableException;
+import com.campsite.reservation.Reservation;
+import com.campsite.reservation.ReservationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reservation attempts from 1, 8 and 64 threads
+ *
+ * In the conflicting benchmarks all the threads try to book the same night, in the disjoint ones each thread
+ * books its own night. Only 30 arrival dates can be booked, so with 64 threads every night is shared by two
+ * or three threads. A successful reservation is deleted right away so the night can be booked again: an
+ * operation is either a rejected attempt or a reservation created and deleted.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReservationAddBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    private ReservationService reservationService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContexts.start();
+        reservationService = context.getBean(ReservationService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    /**
+     * Nights booked by a benchmark thread
+     */
+    @State(Scope.Thread)
+    public static class Nights {
+
+        private static final AtomicInteger THREADS = new AtomicInteger();
+
+        private LocalDate sharedArrivalDate;
+
+        private LocalDate ownArrivalDate;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            sharedArrivalDate = LocalDate.now().plusDays(15);
+            ownArrivalDate = LocalDate.now().plusDays(1 + (THREADS.getAndIncrement() % 30));
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean conflicting1(Nights nights) {
+        return book(nights.sharedArrivalDate);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean conflicting8(Nights nights) {
+        return book(nights.sharedArrivalDate);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean conflicting64(Nights nights) {
+        return book(nights.sharedArrivalDate);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean disjoint1(Nights nights) {
+        return book(nights.ownArrivalDate);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean disjoint8(Nights nights) {
+        return book(nights.ownArrivalDate);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public boolean disjoint64(Nights nights) {
+        return book(nights.ownArrivalDate);
+    }
+
+    private boolean book(LocalDate arrivalDate) {
+        Reservation reservation = new Reservation();
+        reservation.setGuestName("Diego Rivera");
+        reservation.setGuestMail("diegor@gmail.com");
+        reservation.setArrivalDate(arrivalDate);
+        reservation.setDepartureDate(arrivalDate.plusDays(1));
+
+        try {
+            reservationService.delete(reservationService.add(reservation).getId());
+            return true;
+        } catch (NotAvailableException | CalendarBusyException e) {
+            return false;
+        }
+    }
+}
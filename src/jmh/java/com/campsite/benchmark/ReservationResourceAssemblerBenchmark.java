@@ -0,0 +1,71 @@
+package com.campsite.benchmark;
+
+import com.campsite.CampsiteLinks;
+import com.campsite.reservation.Reservation;
+import com.campsite.reservation.ReservationResource;
+import com.campsite.reservation.ReservationResourceAssembler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.time.LocalDate;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of a reservation to its resource, including the self link built from the current request
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReservationResourceAssemblerBenchmark {
+
+    private final ReservationResourceAssembler assembler = new ReservationResourceAssembler();
+
+    private Reservation reservation;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        //The links are injected by Spring in the application
+        ReflectionTestUtils.setField(assembler, "campsiteLinks", new CampsiteLinks());
+
+        //The links are built from the request bound to the thread, as in the controller
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/reservations");
+        request.setServerName("localhost");
+        request.setServerPort(8080);
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+        reservation = new Reservation();
+        reservation.setId(UUID.randomUUID().toString());
+        reservation.setGuestName("Diego Rivera");
+        reservation.setGuestMail("diegor@gmail.com");
+        reservation.setArrivalDate(LocalDate.now().plusDays(10));
+        reservation.setDepartureDate(LocalDate.now().plusDays(12));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Benchmark
+    public ReservationResource toResource() {
+        return assembler.toResource(reservation);
+    }
+}
@@ -1,21 +1,38 @@
 package com.campsite;
 
-import com.campsite.availability.AvailabilityResource;
+import com.campsite.availability.AvailabilityBroadcaster;
+import com.campsite.availability.AvailabilityCache;
+import com.campsite.availability.AvailabilityResponseCache;
 import com.campsite.availability.AvailabilityService;
+import com.campsite.availability.MultiAvailabilityResource;
+import com.campsite.idempotency.IdempotencyService;
 import com.campsite.reservation.Reservation;
+import com.campsite.reservation.ReservationBatchItem;
+import com.campsite.reservation.ReservationBatchResource;
 import com.campsite.reservation.ReservationResource;
 import com.campsite.reservation.ReservationResourceAssembler;
 import com.campsite.reservation.ReservationService;
+import io.micrometer.core.annotation.Timed;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 @RequestMapping(value = "campsite")
+@Timed(histogram = true) //Request timers (http.server.requests) with latency histograms, tagged by uri
+
 public class CampsiteController {
 
     @Autowired
@@ -24,14 +41,33 @@ public class CampsiteController {
     @Autowired
     private AvailabilityService availabilityService;
 
+    @Autowired
+    private AvailabilityBroadcaster availabilityBroadcaster;
+
+    @Autowired
+    private AvailabilityCache availabilityCache;
+
+    @Autowired
+    private AvailabilityResponseCache availabilityResponseCache;
+
+    @Autowired
+    private CampsiteLinks campsiteLinks;
+
     @Autowired
     private ReservationResourceAssembler reservationResourceAssembler;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
     /**
      * Service that returns the campsite availability in a given time range
+     * The body is written from the serialized responses cached for the calendar version, gzipped if the client accepts
+     * it. The ETag is the calendar version, with a suffix for the gzipped body, so a request with If-None-Match is
+     * answered with a 304 if the availability did not change
      *
      * @param from Range start date
      * @param to Range end date
+     * @param request Request, to check the If-None-Match header
      * @return Periods of time where the campsite is available
      */
     @RequestMapping(
@@ -40,15 +76,77 @@ public class CampsiteController {
                 produces = { "application/campsite-availability-response-v1-hal+json" }
             )
     public ResponseEntity<Object> getAvailability(@RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
-                                                  @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+                                                  @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                  WebRequest request) {
+
+        //Read before the availability, so the ETag is never newer than the body. The default range starts today
+        long version = availabilityCache.getVersion();
+        String versionTag = availabilityCache.versionTag(version);
+        boolean defaultRange = (from == null) && (to == null);
+        String range = defaultRange ? "default/" + LocalDate.now() : from + "/" + to;
+
+        //Got before checking the ETag, so an invalid range is rejected instead of answered with a 304
+        AvailabilityResponseCache.Body body = availabilityResponseCache.get(version, range, campsiteLinks.baseUri(),
+                () -> availabilityService.getAvailability(from, to));
+        boolean gzipped = (body.getGzipped() != null) && (request != null) && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
 
-        AvailabilityResource resource = availabilityService.getAvailability(from, to);
+        //Each coding has its own ETag, the bytes sent are not the same
+        String etag = defaultRange ? versionTag + "-" + LocalDate.now() : versionTag;
+        if (gzipped) {
+            etag = etag + "-gzip";
+        }
+        if ((request != null) && request.checkNotModified(etag)) {
+            return null;
+        }
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzipped) {
+            //The server compression skips the responses with a Content-Encoding
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new ResponseEntity<>(body.getGzipped(), headers, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(body.getJson(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * Service that returns the campsite availability in several time ranges at once
+     *
+     * @param ranges Ranges with the format yyyy-MM-dd/yyyy-MM-dd
+     * @return Periods of time where the campsite is available in each range, in the same order
+     */
+    @RequestMapping(
+                method = RequestMethod.GET,
+                value = "/availability/ranges",
+                produces = { "application/campsite-multi-availability-response-v1-hal+json" }
+            )
+    public ResponseEntity<Object> getAvailabilities(@RequestParam(value = "range", required = false) List<String> ranges) {
+
+        MultiAvailabilityResource resource = availabilityService.getAvailabilities(ranges);
         return new ResponseEntity<>(resource, HttpStatus.OK);
     }
 
+    /**
+     * Service that streams the changes of the campsite availability (Server-Sent Events)
+     * The first event (ready) has the version of the last change, the next ones (availability) the ranges opened and closed by each change
+     *
+     * @return Stream of availability changes
+     */
+    @RequestMapping(
+                method = RequestMethod.GET,
+                value = "/availability/stream",
+                produces = { MediaType.TEXT_EVENT_STREAM_VALUE }
+            )
+    public ResponseEntity<SseEmitter> streamAvailability() {
+
+        return new ResponseEntity<>(availabilityBroadcaster.subscribe(), HttpStatus.OK);
+    }
+
     /**
      * Service to make a reservation
+     * A retry with the same Idempotency-Key gets the response of the reservation already made
      *
+     * @param idempotencyKey Optional key identifying the request among its retries
      * @param reservationRequest Reservation to create
      * @return The created reservation
      */
@@ -58,15 +156,49 @@ public class CampsiteController {
                 produces = { "application/campsite-reservation-response-v1-hal+json" },
                 consumes = { "application/campsite-reservation-v1-hal+json" }
           )
-    public ResponseEntity<Object> makeReservation(@RequestBody ReservationResource reservationRequest) {
+    public ResponseEntity<Object> makeReservation(@RequestHeader(value = IdempotencyService.KEY_HEADER, required = false) String idempotencyKey,
+                                                  @RequestBody ReservationResource reservationRequest) {
+
+        return idempotencyService.execute(idempotencyKey, "POST /reservation", reservationRequest, () -> {
+            Reservation entity = reservationResourceAssembler.toEntity(reservationRequest);
+            Reservation savedEntity = reservationService.add(entity);
+            return new ResponseEntity<>(reservationResourceAssembler.toResource(savedEntity), HttpStatus.CREATED);
+        });
+    }
+
+    /**
+     * Service to make several reservations at once
+     *
+     * @param batchRequest Reservations to create and whether all of them must be created or none
+     * @return The result of each reservation. The status is 201 if all of them were created, 207 if only some
+     * and 400 if none
+     */
+    @RequestMapping(
+                method = RequestMethod.POST,
+                value = "/reservation/batch",
+                produces = { "application/campsite-reservation-batch-response-v1-hal+json" },
+                consumes = { "application/campsite-reservation-batch-v1-hal+json" }
+          )
+    public ResponseEntity<Object> makeReservations(@RequestBody ReservationBatchResource batchRequest) {
+
+        List<Reservation> entities = null;
+        if (batchRequest.getReservations() != null) {
+            entities = batchRequest.getReservations().stream()
+                    .map(reservationResourceAssembler::toEntity)
+                    .collect(Collectors.toList());
+        }
+        boolean allOrNothing = batchRequest.getMode() != ReservationBatchResource.Mode.BEST_EFFORT;
+        List<ReservationBatchItem> items = reservationService.addAll(entities, allOrNothing);
 
-        Reservation entity = reservationResourceAssembler.toEntity(reservationRequest);
-        Reservation savedEntity = reservationService.add(entity);
-        return new ResponseEntity<>(reservationResourceAssembler.toResource(savedEntity), HttpStatus.CREATED);
+        long created = items.stream().filter(item -> item.getStatus() == ReservationBatchItem.Status.CREATED).count();
+        HttpStatus status = (created == items.size()) ? HttpStatus.CREATED : ((created > 0) ? HttpStatus.MULTI_STATUS : HttpStatus.BAD_REQUEST);
+        return new ResponseEntity<>(reservationResourceAssembler.toBatchResource(items), status);
     }
 
     /**
      * Service to update a reservation
+     * A retry with the same Idempotency-Key gets the response of the update already made
+     * @param idempotencyKey Optional key identifying the request among its retries
      * @param id Id of the reservation to be updated
      * @param reservationRequest Reservation with the changes to be made
      * @return The updated reservation
@@ -77,19 +209,26 @@ public class CampsiteController {
             produces = { "application/campsite-reservation-response-v1-hal+json" },
             consumes = { "application/campsite-reservation-patch-v1-hal+json" }
     )
-    public ResponseEntity<Object> updateReservation(@PathVariable String id,
+    public ResponseEntity<Object> updateReservation(@RequestHeader(value = IdempotencyService.KEY_HEADER, required = false) String idempotencyKey,
+                                                    @PathVariable String id,
                                                     @RequestBody ReservationResource reservationRequest) {
 
-        Reservation entity = reservationResourceAssembler.toEntity(reservationRequest);
-        entity.setId(id);
-        Reservation updatedEntity = reservationService.update(entity);
-        return new ResponseEntity<>(reservationResourceAssembler.toResource(updatedEntity), HttpStatus.OK);
+        return idempotencyService.execute(idempotencyKey, "PATCH /reservation/" + id, reservationRequest, () -> {
+            Reservation entity = reservationResourceAssembler.toEntity(reservationRequest);
+            entity.setId(id);
+            Reservation updatedEntity = reservationService.update(entity);
+            return new ResponseEntity<>(reservationResourceAssembler.toResource(updatedEntity), HttpStatus.OK);
+        });
     }
 
     /**
      * Service to get a reservation
+     * The ETag is the version of the reservation, if it did not change the answer to If-None-Match is a 304. The
+     * reservation is read through the reservation cache, so the hot ones are not read from the database. If-None-Match
+     * is checked first against the version in the cache, so a 304 doesn't need the reservation
      *
      * @param id Id of the reservation
+     * @param request Request, to check the If-None-Match header
      * @return Reservation with the given id
      */
     @RequestMapping(
@@ -97,9 +236,19 @@ public class CampsiteController {
             value = "/reservation/{id}",
             produces = { "application/campsite-reservation-response-v1-hal+json" }
     )
-    public ResponseEntity<Object> getReservation(@PathVariable String id) {
+    public ResponseEntity<Object> getReservation(@PathVariable String id, WebRequest request) {
+
+        //The checks also set the ETag of the response
+        Long cachedVersion = reservationService.getCachedVersion(id);
+        if ((cachedVersion != null) && request.checkNotModified(String.valueOf(cachedVersion))) {
+            return null;
+        }
 
         Reservation entity = reservationService.get(id);
+        if (request.checkNotModified(String.valueOf(entity.getVersion()))) {
+            return null;
+        }
+
         return new ResponseEntity<>(reservationResourceAssembler.toResource(entity), HttpStatus.OK);
     }
 
@@ -119,4 +268,35 @@ public class CampsiteController {
         return new ResponseEntity<>("", HttpStatus.NO_CONTENT);
     }
 
+    /**
+     * @param acceptEncoding Accept-Encoding header of the request
+     * @return true if it accepts gzip, by name or by wildcard, with a quality above zero
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            String name = parts[0].trim();
+            if (name.equalsIgnoreCase("gzip") || name.equals("*")) {
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=") && (quality(parameter.substring(2)) <= 0)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static double quality(String value) {
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
 }
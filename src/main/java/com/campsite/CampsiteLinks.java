@@ -0,0 +1,126 @@
+package com.campsite;
+
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.hateoas.Link;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ReflectionUtils;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Builds the links to the campsite resources
+ *
+ * The paths are resolved once from the mappings of CampsiteController and split around their variables, so a link
+ * is built by concatenating strings instead of creating a proxy of the controller and resolving its mapping each time.
+ * The base URI (scheme, host, port and context path, honoring the Forwarded and X-Forwarded-* headers) is resolved
+ * once per request. Outside a servlet request, as in the reactive mode, the links are relative.
+ */
+@Component
+public class CampsiteLinks {
+
+    private static final String BASE_URI_ATTRIBUTE = CampsiteLinks.class.getName() + ".BASE_URI";
+
+    private final String[] reservationPath = split(mappingPath("getReservation", String.class, WebRequest.class));
+
+    private final String availabilityPath = mappingPath("getAvailability", LocalDate.class, LocalDate.class, WebRequest.class);
+
+    private final String availabilitiesPath = mappingPath("getAvailabilities", List.class);
+
+    /**
+     * @param id Id of the reservation
+     * @return Self link of a reservation
+     */
+    public Link reservation(String id) {
+        String href = new StringBuilder(baseUri())
+                .append(reservationPath[0])
+                .append(UriUtils.encodePathSegment(id, StandardCharsets.UTF_8))
+                .append(reservationPath[1])
+                .toString();
+        return new Link(href);
+    }
+
+    /**
+     * @param from Range start
+     * @param to Range end
+     * @return Self link of the availability of a range
+     */
+    public Link availability(LocalDate from, LocalDate to) {
+        String href = new StringBuilder(baseUri())
+                .append(availabilityPath)
+                .append("?from=").append(from)
+                .append("&to=").append(to)
+                .toString();
+        return new Link(href);
+    }
+
+    /**
+     * @param ranges Ranges requested, with the format yyyy-MM-dd/yyyy-MM-dd
+     * @return Self link of the availability of several ranges
+     */
+    public Link availabilities(List<String> ranges) {
+        StringBuilder href = new StringBuilder(baseUri()).append(availabilitiesPath);
+        char separator = '?';
+        for (String range : ranges) {
+            href.append(separator).append("range=").append(UriUtils.encodeQueryParam(range, StandardCharsets.UTF_8));
+            separator = '&';
+        }
+        return new Link(href.toString());
+    }
+
+    /**
+     * @return Base URI of the current request, or an empty string if there is no servlet request
+     */
+    public String baseUri() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes)) {
+            return "";
+        }
+
+        String baseUri = (String) attributes.getAttribute(BASE_URI_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (baseUri == null) {
+            HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+            baseUri = UriComponentsBuilder.fromHttpRequest(new ServletServerHttpRequest(request))
+                    .replacePath(request.getContextPath())
+                    .replaceQuery(null)
+                    .fragment(null)
+                    .build()
+                    .toUriString();
+            attributes.setAttribute(BASE_URI_ATTRIBUTE, baseUri, RequestAttributes.SCOPE_REQUEST);
+        }
+        return baseUri;
+    }
+
+    /**
+     * Resolves the path of a handler method of CampsiteController, joining the type and method mappings
+     */
+    private static String mappingPath(String methodName, Class<?>... parameterTypes) {
+        Method method = ReflectionUtils.findMethod(CampsiteController.class, methodName, parameterTypes);
+        if (method == null) {
+            throw new IllegalStateException("CampsiteController has no method " + methodName);
+        }
+        RequestMapping typeMapping = AnnotatedElementUtils.findMergedAnnotation(CampsiteController.class, RequestMapping.class);
+        RequestMapping methodMapping = AnnotatedElementUtils.findMergedAnnotation(method, RequestMapping.class);
+        return ("/" + typeMapping.value()[0] + "/" + methodMapping.value()[0]).replaceAll("/+", "/");
+    }
+
+    /**
+     * Splits a path with a single variable in the parts before and after it
+     */
+    private static String[] split(String path) {
+        int start = path.indexOf('{');
+        int end = path.indexOf('}', start);
+        return new String[] { path.substring(0, start), path.substring(end + 1) };
+    }
+}
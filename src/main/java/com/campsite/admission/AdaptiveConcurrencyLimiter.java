@@ -0,0 +1,174 @@
+package com.campsite.admission;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of writes in progress, adapting the limit to the latency observed
+ *
+ * The limit follows the gradient between the long-term latency (what the writes take when the system is not
+ * saturated, the lowest window latency seen drifting up 1% per window) and the latency of the last window of writes:
+ *
+ *      newLimit = limit * min(1, tolerance * longLatency / windowLatency) + sqrt(limit)
+ *
+ * While the latency stays flat the gradient is 1 and the limit grows by sqrt(limit) per window, so it probes for more
+ * capacity. When the writes start to queue (on the night locks, the connection pool or the database) the window
+ * latency grows and the limit shrinks proportionally. A write that times out waiting for its locks halves the
+ * gradient of the window (multiplicative decrease). The limit is smoothed and kept between the minimum and maximum.
+ *
+ * Acquiring a permit never blocks: the writes above the limit are rejected immediately. When the limiter is disabled
+ * (campsite.reservation.admission.enabled) every write is admitted, but still measured.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter implements MeterBinder {
+
+    //How much the window latency can exceed the long-term one before the limit decreases
+    private static final double TOLERANCE = 1.5;
+
+    //Weight of the new limit when it is smoothed
+    private static final double SMOOTHING = 0.2;
+
+    //How much the long-term latency can rise per window, so a lasting change of the latency is eventually accepted
+    private static final double LONG_LATENCY_DRIFT = 0.01;
+
+    @Value("${campsite.reservation.admission.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${campsite.reservation.admission.initial-limit:20}")
+    private int initialLimit;
+
+    @Value("${campsite.reservation.admission.min-limit:2}")
+    private int minLimit;
+
+    @Value("${campsite.reservation.admission.max-limit:200}")
+    private int maxLimit;
+
+    @Value("${campsite.reservation.admission.window-size:20}")
+    private int windowSize;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile double limit;
+
+    //Latency of the writes of the current window, guarded by this
+    private long windowNanos;
+    private int windowCount;
+    private boolean windowDropped;
+    private int windowMaxInFlight;
+
+    private double longLatency;
+
+    public AdaptiveConcurrencyLimiter() {
+    }
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, int windowSize) {
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.windowSize = windowSize;
+        init();
+    }
+
+    @PostConstruct
+    public void init() {
+        limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Takes a permit for a write if the limit is not reached
+     *
+     * @return true if the write can proceed. It must call {@link #release} when it finishes
+     */
+    public boolean tryAcquire() {
+        if (!enabled) {
+            inFlight.incrementAndGet();
+            return true;
+        }
+
+        int current;
+        do {
+            current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+        } while (!inFlight.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Returns the permit of a finished write and records its latency
+     *
+     * @param startNanos System.nanoTime() when the write was admitted
+     * @param dropped true if the write failed because the system is saturated (e.g. lock timeout)
+     */
+    public void release(long startNanos, boolean dropped) {
+        int current = inFlight.getAndDecrement();
+        sample(System.nanoTime() - startNanos, current, dropped);
+    }
+
+    private synchronized void sample(long latencyNanos, int inFlightAtRelease, boolean dropped) {
+        windowNanos += latencyNanos;
+        windowCount++;
+        windowDropped |= dropped;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtRelease);
+        if (windowCount < windowSize) {
+            return;
+        }
+
+        //The long-term latency is the lowest window latency seen, slowly drifting up
+        double windowLatency = (double) windowNanos / windowCount;
+        if (longLatency == 0) {
+            longLatency = windowLatency;
+        } else {
+            longLatency = Math.min(windowLatency, longLatency * (1 + LONG_LATENCY_DRIFT));
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, TOLERANCE * longLatency / windowLatency));
+        if (windowDropped) {
+            gradient /= 2;
+        }
+
+        double newLimit = limit * gradient;
+        //Only probe for more capacity if the writes are using the current limit
+        if (windowMaxInFlight * 2 >= limit) {
+            newLimit += Math.sqrt(limit);
+        }
+        newLimit = (1 - SMOOTHING) * limit + SMOOTHING * newLimit;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+
+        windowNanos = 0;
+        windowCount = 0;
+        windowDropped = false;
+        windowMaxInFlight = 0;
+    }
+
+    /**
+     * @return Current limit of writes in progress
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return Writes in progress
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("campsite.admission.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current limit of reservation writes in progress")
+                .register(registry);
+        Gauge.builder("campsite.admission.in-flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Reservation writes in progress")
+                .register(registry);
+    }
+}
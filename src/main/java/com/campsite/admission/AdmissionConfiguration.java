@@ -0,0 +1,23 @@
+package com.campsite.admission;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Puts the admission control in front of the reservation endpoints. The availability endpoints are not affected
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+public class AdmissionConfiguration implements WebMvcConfigurer {
+
+    @Autowired
+    private WriteAdmissionInterceptor writeAdmissionInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(writeAdmissionInterceptor).addPathPatterns("/campsite/reservation", "/campsite/reservation/**");
+    }
+}
@@ -0,0 +1,47 @@
+package com.campsite.admission;
+
+import com.campsite.exception.ErrorMessages;
+import com.campsite.exception.OverloadedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Admits the reservation writes through the adaptive concurrency limiter
+ * The writes above the limit are rejected with a 503 before reaching the service. Reads are not limited
+ */
+@Component
+public class WriteAdmissionInterceptor implements HandlerInterceptor {
+
+    private static final String START_ATTRIBUTE = WriteAdmissionInterceptor.class.getName() + ".start";
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (HttpMethod.GET.matches(request.getMethod()) || HttpMethod.HEAD.matches(request.getMethod())) {
+            return true;
+        }
+        if (!limiter.tryAcquire()) {
+            throw new OverloadedException(ErrorMessages.WRITES_OVERLOADED.getMessage());
+        }
+        request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        Long start = (Long) request.getAttribute(START_ATTRIBUTE);
+        if (start != null) {
+            request.removeAttribute(START_ATTRIBUTE);
+            //A 503 here comes from the write itself timing out on its locks
+            limiter.release(start, response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value());
+        }
+    }
+}
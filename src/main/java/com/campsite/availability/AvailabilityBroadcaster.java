@@ -0,0 +1,272 @@
+package com.campsite.availability;
+
+import com.campsite.exception.ErrorMessages;
+import com.campsite.exception.OverloadedException;
+import com.campsite.reservation.ReservationChangedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes the changes of the availability to the clients following it (Server-Sent Events)
+ *
+ * Every reservation change that frees or occupies nights is sent as the ranges opened and closed. Writers never
+ * wait for the clients: each change is offered to a bounded queue per client and the queues are drained by a
+ * small pool of sender threads. A client whose queue is full is too slow and its stream is closed, it has to
+ * reconnect and get the availability again.
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET) //Streams over SseEmitter, not available in the reactive mode
+public class AvailabilityBroadcaster implements MeterBinder {
+
+    //Queued to send a heartbeat comment, so closed connections are detected
+    private static final Object HEARTBEAT = new Object();
+
+    @Value("${campsite.availability.stream.max-subscribers:10000}")
+    private int maxSubscribers;
+
+    @Value("${campsite.availability.stream.queue-size:64}")
+    private int queueSize;
+
+    @Value("${campsite.availability.stream.timeout-ms:1800000}")
+    private long timeoutMillis;
+
+    @Value("${campsite.availability.stream.sender-threads:4}")
+    private int senderThreads;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final AtomicLong version = new AtomicLong();
+
+    //Clients disconnected because they could not keep up with the changes
+    private final AtomicLong overflows = new AtomicLong();
+
+    private ExecutorService senders;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, "availability-stream-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.close();
+        }
+        senders.shutdownNow();
+    }
+
+    /**
+     * Adds a client following the availability
+     * The first event (ready) has the version of the last change, the client should get the availability after it
+     *
+     * @return Stream of events for the client
+     * @throws OverloadedException if there are too many clients
+     */
+    public SseEmitter subscribe() {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new OverloadedException(ErrorMessages.TOO_MANY_SUBSCRIBERS.getMessage());
+        }
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+
+        subscriber.offer(version.get());
+        return emitter;
+    }
+
+    /**
+     * Sends the ranges opened and closed by a reservation change to all the clients
+     * It runs after the free periods index is updated, so a client getting the availability after the change sees it
+     *
+     * @param event Reservation change
+     */
+    @EventListener
+    @Order(2)
+    public void onReservationChanged(ReservationChangedEvent event) {
+        if (!event.changesAvailability()) {
+            return;
+        }
+
+        //The nights of the previous period not occupied anymore are opened, and the new ones closed
+        AvailabilityChangeResource change = new AvailabilityChangeResource(version.incrementAndGet(),
+                difference(event.getPreviousArrivalDate(), event.getPreviousDepartureDate(), event.getArrivalDate(), event.getDepartureDate()),
+                difference(event.getArrivalDate(), event.getDepartureDate(), event.getPreviousArrivalDate(), event.getPreviousDepartureDate()));
+
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(change);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${campsite.availability.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(HEARTBEAT);
+        }
+    }
+
+    /**
+     * @return Number of clients following the availability
+     */
+    public int getSubscribers() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("campsite.availability.stream.subscribers", this, AvailabilityBroadcaster::getSubscribers)
+                .description("Clients following the availability changes")
+                .register(registry);
+        FunctionCounter.builder("campsite.availability.stream.overflows", overflows, AtomicLong::get)
+                .description("Clients disconnected because they were too slow")
+                .register(registry);
+    }
+
+    /**
+     * Subtracts a period from another
+     *
+     * @return Parts of the period [from, to) not in [otherFrom, otherTo). Empty if the period is null
+     */
+    static List<TimeRangeResource> difference(LocalDate from, LocalDate to, LocalDate otherFrom, LocalDate otherTo) {
+        List<TimeRangeResource> ranges = new ArrayList<>(2);
+        if (from == null) {
+            return ranges;
+        }
+        if ((otherFrom == null) || !otherFrom.isBefore(to) || !otherTo.isAfter(from)) {
+            ranges.add(new TimeRangeResource(from, to));
+            return ranges;
+        }
+        if (from.isBefore(otherFrom)) {
+            ranges.add(new TimeRangeResource(from, otherFrom));
+        }
+        if (otherTo.isBefore(to)) {
+            ranges.add(new TimeRangeResource(otherTo, to));
+        }
+        return ranges;
+    }
+
+    /**
+     * Client following the availability, with the messages not sent yet
+     * At most one sender thread drains its queue at a time
+     */
+    private class Subscriber implements Runnable {
+
+        private final SseEmitter emitter;
+
+        private final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueSize);
+
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        //Set when the client is too slow, the sender closes the stream
+        private volatile boolean overflowed;
+
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * Queues a message without blocking
+         */
+        private void offer(Object message) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(message)) {
+                overflowed = true;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this);
+                } catch (RejectedExecutionException e) {
+                    scheduled.set(false); //Shutting down
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Object message;
+                while (!overflowed && !closed && ((message = queue.poll()) != null)) {
+                    send(message);
+                }
+                if (overflowed) {
+                    overflows.incrementAndGet();
+                    close();
+                }
+            } catch (IOException | IllegalStateException e) {
+                //The connection is closed or the stream completed
+                closed = true;
+                subscribers.remove(this);
+            } finally {
+                scheduled.set(false);
+            }
+
+            //Messages queued after the queue was found empty
+            if (!closed && !queue.isEmpty()) {
+                schedule();
+            }
+        }
+
+        private void send(Object message) throws IOException {
+            if (message == HEARTBEAT) {
+                emitter.send(SseEmitter.event().comment("heartbeat"));
+            } else if (message instanceof AvailabilityChangeResource) {
+                AvailabilityChangeResource change = (AvailabilityChangeResource) message;
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(change.getVersion()))
+                        .name("availability")
+                        .data(change, MediaType.APPLICATION_JSON));
+            } else {
+                emitter.send(SseEmitter.event().name("ready").data(String.valueOf(message)));
+            }
+        }
+
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+            emitter.complete();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.campsite.availability;
+
+import com.campsite.reservation.ReservationChangedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of the available ranges computed for each requested range
+ *
+ * Entries are evicted when a reservation change frees or occupies nights of their range. Every change bumps
+ * the calendar version: a value computed while a change was being made is not stored, since it may be stale.
+ * Entries also expire after a short time, so changes made by other nodes are eventually seen.
+ * The calendar version, qualified with the instance start time, is also the ETag of the availability responses.
+ * The least recently used entry is evicted when the cache is full.
+ *
+ * The statistics are exposed through JMX and as campsite.availability.cache metrics.
+ */
+@Component
+@ManagedResource
+public class AvailabilityCache implements MeterBinder {
+
+    private final int maxSize;
+
+    private final long ttlMillis;
+
+    private final Map<TimeRangeResource, Entry> entries;
+
+    private final AtomicLong version = new AtomicLong();
+
+    //Start time of this instance, so the versions of different instances or runs are never mistaken
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    public AvailabilityCache(@Value("${campsite.availability.cache.max-size:1024}") int maxSize,
+                             @Value("${campsite.availability.cache.ttl-ms:5000}") long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<TimeRangeResource, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<TimeRangeResource, AvailabilityCache.Entry> eldest) {
+                if (size() > AvailabilityCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets the available ranges of a requested range, computing them if they are not cached
+     *
+     * @param from Range start
+     * @param to Range end
+     * @param loader Computes the available ranges
+     * @return Available ranges. The list can't be modified
+     */
+    public List<TimeRangeResource> get(LocalDate from, LocalDate to, Supplier<List<TimeRangeResource>> loader) {
+        TimeRangeResource key = new TimeRangeResource(from, to);
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                if (now - entry.createdAt < ttlMillis) {
+                    hits.incrementAndGet();
+                    return entry.ranges;
+                }
+                entries.remove(key);
+                evictions.incrementAndGet();
+            }
+        }
+
+        misses.incrementAndGet();
+        long loadVersion = version.get();
+        List<TimeRangeResource> ranges = Collections.unmodifiableList(loader.get());
+
+        synchronized (this) {
+            //Don't store the value if the calendar changed while it was computed
+            if (version.get() == loadVersion) {
+                entries.put(key, new Entry(ranges, now));
+            }
+        }
+        return ranges;
+    }
+
+    /**
+     * Bumps the calendar version and evicts the entries whose range overlaps the nights changed
+     * It runs after the free periods index is updated, so the ranges loaded from then on are up to date
+     *
+     * @param event Reservation change
+     */
+    @EventListener
+    @Order(1)
+    public void onReservationChanged(ReservationChangedEvent event) {
+        if (!event.changesAvailability()) {
+            return;
+        }
+        //Bumped with the entries evicted, so whoever sees the new version can't get an entry evicted by it
+        synchronized (this) {
+            version.incrementAndGet();
+            Iterator<TimeRangeResource> iterator = entries.keySet().iterator();
+            while (iterator.hasNext()) {
+                TimeRangeResource range = iterator.next();
+                if (event.changesAvailability(range.getFrom(), range.getTo())) {
+                    iterator.remove();
+                    evictions.incrementAndGet();
+                }
+            }
+        }
+    }
+
+    /**
+     * Bumps the calendar version and evicts all the entries
+     * It is used when the availability changed without an event, like the changes of other nodes found by a rebuild
+     */
+    public void invalidateAll() {
+        synchronized (this) {
+            version.incrementAndGet();
+            evictions.addAndGet(entries.size());
+            entries.clear();
+        }
+    }
+
+    @ManagedAttribute(description = "Calendar version, incremented on each change of the availability")
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * @return Calendar version qualified with the instance start time, unique across instances and restarts
+     */
+    public String getVersionTag() {
+        return versionTag(version.get());
+    }
+
+    /**
+     * @param version Calendar version read before with getVersion
+     * @return The version qualified with the instance start time, as getVersionTag
+     */
+    public String versionTag(long version) {
+        return epoch + "-" + version;
+    }
+
+    @ManagedAttribute(description = "Number of requests served from the cache")
+    public long getHits() {
+        return hits.get();
+    }
+
+    @ManagedAttribute(description = "Number of requests not found in the cache")
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @ManagedAttribute(description = "Number of entries evicted")
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @ManagedAttribute(description = "Number of entries in the cache")
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("campsite.availability.cache.requests", hits, AtomicLong::get)
+                .description("Availability requests served from the cache")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("campsite.availability.cache.requests", misses, AtomicLong::get)
+                .description("Availability requests not found in the cache")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("campsite.availability.cache.evictions", evictions, AtomicLong::get)
+                .description("Availability cache entries evicted")
+                .register(registry);
+        Gauge.builder("campsite.availability.cache.size", this, AvailabilityCache::getSize)
+                .description("Availability cache entries")
+                .register(registry);
+    }
+
+    private static class Entry {
+
+        private final List<TimeRangeResource> ranges;
+
+        private final long createdAt;
+
+        private Entry(List<TimeRangeResource> ranges, long createdAt) {
+            this.ranges = ranges;
+            this.createdAt = createdAt;
+        }
+    }
+}
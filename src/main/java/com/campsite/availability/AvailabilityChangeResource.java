@@ -0,0 +1,45 @@
+package com.campsite.availability;
+
+import java.util.List;
+
+public class AvailabilityChangeResource {
+
+    //Number of the change. It increases by one with each change, so a client can detect that it missed one
+    private long version;
+
+    //Periods that became available
+    private List<TimeRangeResource> opened;
+
+    //Periods that are not available anymore
+    private List<TimeRangeResource> closed;
+
+    public AvailabilityChangeResource(long version, List<TimeRangeResource> opened, List<TimeRangeResource> closed) {
+        this.version = version;
+        this.opened = opened;
+        this.closed = closed;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public List<TimeRangeResource> getOpened() {
+        return opened;
+    }
+
+    public void setOpened(List<TimeRangeResource> opened) {
+        this.opened = opened;
+    }
+
+    public List<TimeRangeResource> getClosed() {
+        return closed;
+    }
+
+    public void setClosed(List<TimeRangeResource> closed) {
+        this.closed = closed;
+    }
+}
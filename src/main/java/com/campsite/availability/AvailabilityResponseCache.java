@@ -0,0 +1,190 @@
+package com.campsite.availability;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bounded cache of the serialized availability responses of the most requested ranges
+ *
+ * The bodies are kept as JSON bytes, and gzipped too if they are large enough to be compressed, so a hit is written
+ * to the response without building the resource or serializing it. They are keyed by calendar version, range and
+ * base URI of the links: when a newer version is seen all the entries are dropped, so nothing else evicts them. The
+ * version only moves forward, a request that read an older version before a change gets its body computed and not
+ * stored. The least recently used entry is evicted when the cache is full.
+ */
+@Component
+public class AvailabilityResponseCache implements MeterBinder {
+
+    private final int maxSize;
+
+    //Bodies smaller than this are not gzipped. Negative to never gzip them
+    private final int gzipMinSize;
+
+    private final Map<Key, Body> bodies;
+
+    //Version of the entries in the cache, the newest seen
+    private long version;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    public AvailabilityResponseCache(@Value("${campsite.availability.response-cache.max-size:256}") int maxSize,
+                                     @Value("${campsite.availability.response-cache.gzip:true}") boolean gzip,
+                                     @Value("${server.compression.min-response-size:1024}") int gzipMinSize) {
+        this.maxSize = maxSize;
+        this.gzipMinSize = gzip ? gzipMinSize : -1;
+        this.bodies = new LinkedHashMap<Key, Body>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Body> eldest) {
+                return size() > AvailabilityResponseCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Gets the serialized availability of a range, computing it if it is not cached
+     *
+     * @param version Calendar version, read before computing the availability
+     * @param range Requested range, as given in the request
+     * @param baseUri Base URI of the links of the response
+     * @param loader Computes the availability
+     * @return Serialized availability
+     */
+    public Body get(long version, String range, String baseUri, Supplier<AvailabilityResource> loader) {
+        Key key = new Key(range, baseUri);
+        synchronized (this) {
+            if (version > this.version) {
+                bodies.clear();
+                this.version = version;
+            }
+            Body body = (version == this.version) ? bodies.get(key) : null;
+            if (body != null) {
+                hits.incrementAndGet();
+                return body;
+            }
+        }
+
+        misses.incrementAndGet();
+        Body body = serialize(loader.get());
+
+        synchronized (this) {
+            //Not stored if the version is older than the newest seen, it may be older than the entries of that version
+            if (version == this.version) {
+                bodies.put(key, body);
+            }
+        }
+        return body;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("campsite.availability.response-cache.requests", hits, AtomicLong::get)
+                .description("Availability responses written from the serialized bodies cached")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("campsite.availability.response-cache.requests", misses, AtomicLong::get)
+                .description("Availability responses serialized")
+                .tag("result", "miss")
+                .register(registry);
+    }
+
+    private Body serialize(AvailabilityResource resource) {
+        byte[] json;
+        try {
+            json = objectMapper.writeValueAsBytes(resource);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+        if ((gzipMinSize < 0) || (json.length < gzipMinSize)) {
+            return new Body(json, null);
+        }
+
+        ByteArrayOutputStream gzipped = new ByteArrayOutputStream(json.length / 4);
+        try (GZIPOutputStream out = new GZIPOutputStream(gzipped)) {
+            out.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return new Body(json, gzipped.toByteArray());
+    }
+
+    /**
+     * Serialized availability
+     */
+    public static class Body {
+
+        private final byte[] json;
+
+        private final byte[] gzipped;
+
+        private Body(byte[] json, byte[] gzipped) {
+            this.json = json;
+            this.gzipped = gzipped;
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        /**
+         * @return The JSON gzipped, or null if it is too small to be compressed
+         */
+        public byte[] getGzipped() {
+            return gzipped;
+        }
+    }
+
+    private static class Key {
+
+        private final String range;
+
+        private final String baseUri;
+
+        private Key(String range, String baseUri) {
+            this.range = range;
+            this.baseUri = baseUri;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return Objects.equals(range, key.range) &&
+                    Objects.equals(baseUri, key.baseUri);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(range, baseUri);
+        }
+    }
+}
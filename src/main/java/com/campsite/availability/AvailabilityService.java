@@ -1,29 +1,35 @@
 package com.campsite.availability;
 
-import com.campsite.CampsiteController;
+import com.campsite.CampsiteLinks;
 import com.campsite.exception.ErrorMessages;
 import com.campsite.exception.InvalidDateException;
-import com.campsite.reservation.Reservation;
-import com.campsite.reservation.ReservationRepository;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.hateoas.Link;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.List;
 
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
-
 @Service
 public class AvailabilityService {
 
     @Autowired
-    private ReservationRepository reservationRepository;
+    private FreeIntervalIndex freeIntervalIndex;
+
+    @Autowired
+    private AvailabilityCache availabilityCache;
+
+    @Autowired
+    private CampsiteLinks campsiteLinks;
+
+    @Value("${campsite.availability.max-ranges:10}")
+    private int maxRanges;
 
     /**
      * Gets availability of the campsite in the given period
+     * The available periods are read from the in-memory index and cached until a reservation change affects them
      * @param from Period start
      * @param to Period end
      * @return List of periods within the limits when the campsite is available
@@ -43,39 +49,82 @@ public class AvailabilityService {
             throw new InvalidDateException(ErrorMessages.INVALID_RANGE.getMessage());
         }
 
-        AvailabilityResource availability = new AvailabilityResource();
-        availability.setRequestedRange(new TimeRangeResource(from, to));
+        LocalDate rangeStart = from;
+        LocalDate rangeEnd = to;
+        List<TimeRangeResource> availableRanges = availabilityCache.get(from, to, () -> freeIntervalIndex.findAvailableRanges(rangeStart, rangeEnd));
 
-        List<TimeRangeResource> availableRanges = new ArrayList<>();
+        return toResource(from, to, availableRanges);
+    }
 
-        //Find all reservations overlapping the requested range ordered
-        List<Reservation> reservationsInRange = reservationRepository.findByDepartureDateGreaterThanAndArrivalDateLessThanOrderByArrivalDate(from, to);
+    /**
+     * Gets availability of the campsite in several periods
+     * All the periods are answered from a single walk over the in-memory index covering all of them
+     * @param ranges Periods with the format yyyy-MM-dd/yyyy-MM-dd
+     * @return Availability of each period, in the same order
+     * @throws InvalidDateException if there are no periods or more than allowed, or if any of them is not valid
+     */
+    public MultiAvailabilityResource getAvailabilities(List<String> ranges) {
+        if ((ranges == null) || ranges.isEmpty()) {
+            throw new InvalidDateException(ErrorMessages.AVAILABILITY_MISSING_RANGES.getMessage());
+        }
+        if (ranges.size() > maxRanges) {
+            throw new InvalidDateException(ErrorMessages.AVAILABILITY_TOO_MANY_RANGES.getMessage());
+        }
 
-        //First assume the campsite is available for the whole range
-        availableRanges.add(new TimeRangeResource(from, to));
+        List<TimeRangeResource> requestedRanges = new ArrayList<>(ranges.size());
+        for (String range : ranges) {
+            requestedRanges.add(parseRange(range));
+        }
 
-        for (Reservation reservation : reservationsInRange) {
-            //For each reservation in the period, remove the last available range saved in the list
-            TimeRangeResource lastAvailableRange = availableRanges.remove(availableRanges.size() - 1);
+        List<List<TimeRangeResource>> availableRanges = freeIntervalIndex.findAvailableRanges(requestedRanges);
 
-            //Compare the range with the current reservation to check whether to insert 1, 2 or none new available ranges
-            //There is an available range from the start of the last available range to the start of the current reservation
-            if (lastAvailableRange.getFrom().isBefore(reservation.getArrivalDate())) {
-                availableRanges.add(new TimeRangeResource(lastAvailableRange.getFrom(), reservation.getArrivalDate()));
-            }
-            //There is an available range from the end of the current reservation to the end of the last available range
-            if (reservation.getDepartureDate().isBefore(lastAvailableRange.getTo())) {
-                availableRanges.add(new TimeRangeResource(reservation.getDepartureDate(), lastAvailableRange.getTo()));
-            }
+        MultiAvailabilityResource availabilities = new MultiAvailabilityResource();
+        for (int i = 0; i < requestedRanges.size(); i++) {
+            TimeRangeResource range = requestedRanges.get(i);
+            availabilities.getAvailabilities().add(toResource(range.getFrom(), range.getTo(), availableRanges.get(i)));
         }
 
+        //Add link to response
+        availabilities.add(campsiteLinks.availabilities(ranges));
+
+        return availabilities;
+    }
+
+    private AvailabilityResource toResource(LocalDate from, LocalDate to, List<TimeRangeResource> availableRanges) {
+        AvailabilityResource availability = new AvailabilityResource();
+        availability.setRequestedRange(new TimeRangeResource(from, to));
         availability.setAvailableRanges(availableRanges);
-        availability.add();
 
         //Add link to response
-        Link link = linkTo(methodOn(CampsiteController.class).getAvailability(from, to)).withSelfRel();
-        availability.add(link);
+        availability.add(campsiteLinks.availability(from, to));
 
         return availability;
     }
+
+    /**
+     * Parses a period with the format yyyy-MM-dd/yyyy-MM-dd
+     * @param range Period to parse
+     * @return Parsed period
+     * @throws InvalidDateException if the format is not valid or the start is not before the end
+     */
+    private static TimeRangeResource parseRange(String range) {
+        String[] dates = range.split("/");
+        if (dates.length != 2) {
+            throw new InvalidDateException(ErrorMessages.INVALID_RANGE_FORMAT.getMessage());
+        }
+
+        LocalDate from;
+        LocalDate to;
+        try {
+            from = LocalDate.parse(dates[0].trim());
+            to = LocalDate.parse(dates[1].trim());
+        } catch (DateTimeParseException e) {
+            throw new InvalidDateException(ErrorMessages.INVALID_RANGE_FORMAT.getMessage());
+        }
+
+        if (!from.isBefore(to)) {
+            throw new InvalidDateException(ErrorMessages.INVALID_RANGE.getMessage());
+        }
+        return new TimeRangeResource(from, to);
+    }
 }
@@ -0,0 +1,294 @@
+package com.campsite.availability;
+
+import com.campsite.reservation.ReservationChangedEvent;
+import com.campsite.reservation.ReservationPeriod;
+import com.campsite.reservation.ReservationRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of the periods when the campsite is free
+ *
+ * The free periods (gaps between reservations) are kept in a map sorted by start date, with the epoch day of
+ * the start as key and the epoch day of the end (exclusive) as value. The first gap starts at LocalDate.MIN
+ * and the last one ends at LocalDate.MAX, so any range can be answered with a sub map view clipped at the edges.
+ *
+ * Gaps are split and merged when reservations are created, moved or deleted. The index is rebuilt from the
+ * repository at startup and periodically, to pick up the changes made by other nodes. The reservations are loaded
+ * without holding the lock, and the changes applied meanwhile are applied again to the rebuilt gaps before swapping
+ * them in, so they are not lost.
+ */
+@Component
+public class FreeIntervalIndex {
+
+    private static final long MIN_DAY = LocalDate.MIN.toEpochDay();
+
+    private static final long MAX_DAY = LocalDate.MAX.toEpochDay();
+
+    @Autowired
+    private ReservationRepository reservationRepository;
+
+    @Autowired
+    private AvailabilityCache availabilityCache;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private NavigableMap<Long, Long> gaps = new TreeMap<>();
+
+    //Changes applied while a rebuild loads the reservations, null if there is no rebuild in progress
+    private List<ReservationChangedEvent> changesDuringRebuild;
+
+    public FreeIntervalIndex() {
+        gaps.put(MIN_DAY, MAX_DAY);
+    }
+
+    /**
+     * Rebuilds the index from all the stored reservations
+     * If the free periods changed (made by other nodes) the cached availability is invalidated
+     */
+    @PostConstruct
+    @Scheduled(fixedDelayString = "${campsite.availability.index.rebuild-interval-ms:60000}",
+            initialDelayString = "${campsite.availability.index.rebuild-interval-ms:60000}")
+    public synchronized void rebuild() {
+        startRebuild();
+        List<? extends ReservationPeriod> reservations;
+        try {
+            reservations = reservationRepository.findPeriodsByOrderByArrivalDate();
+        } catch (RuntimeException e) {
+            endRebuild();
+            throw e;
+        }
+        if (rebuild(reservations)) {
+            availabilityCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Starts recording the changes applied, to apply them again to the gaps rebuilt from the reservations loaded
+     */
+    void startRebuild() {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = new ArrayList<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void endRebuild() {
+        lock.writeLock().lock();
+        try {
+            changesDuringRebuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index from the periods of the reservations
+     * The changes recorded since startRebuild are applied again to the new gaps: the ones already loaded leave them
+     * the same, the rest are added
+     *
+     * @param reservations Periods of the reservations sorted by arrival date
+     * @return true if the free periods changed
+     */
+    boolean rebuild(List<? extends ReservationPeriod> reservations) {
+        NavigableMap<Long, Long> newGaps = new TreeMap<>();
+        long gapStart = MIN_DAY;
+        for (ReservationPeriod reservation : reservations) {
+            long arrivalDay = reservation.getArrivalDate().toEpochDay();
+            if (arrivalDay > gapStart) {
+                newGaps.put(gapStart, arrivalDay);
+            }
+            gapStart = Math.max(gapStart, reservation.getDepartureDate().toEpochDay());
+        }
+        newGaps.put(gapStart, MAX_DAY);
+
+        lock.writeLock().lock();
+        try {
+            if (changesDuringRebuild != null) {
+                for (ReservationChangedEvent event : changesDuringRebuild) {
+                    apply(newGaps, event);
+                }
+                changesDuringRebuild = null;
+            }
+            boolean changed = !newGaps.equals(gaps);
+            gaps = newGaps;
+            return changed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the periods when the campsite is free within a range
+     *
+     * @param from Range start
+     * @param to Range end
+     * @return Free periods sorted by date, clipped to the range
+     */
+    public List<TimeRangeResource> findAvailableRanges(LocalDate from, LocalDate to) {
+        return findAvailableRanges(Collections.singletonList(new TimeRangeResource(from, to))).get(0);
+    }
+
+    /**
+     * Finds the periods when the campsite is free within several ranges
+     * The gaps covering the union of the ranges are walked once, under the same lock, so all the ranges are answered
+     * from the same state of the calendar
+     *
+     * @param ranges Requested ranges. They can overlap
+     * @return Free periods of each range sorted by date, clipped to the range, in the same order as the ranges
+     */
+    public List<List<TimeRangeResource>> findAvailableRanges(List<TimeRangeResource> ranges) {
+        List<List<TimeRangeResource>> availableRanges = new ArrayList<>(ranges.size());
+        for (int i = 0; i < ranges.size(); i++) {
+            availableRanges.add(new ArrayList<>());
+        }
+        if (ranges.isEmpty()) {
+            return availableRanges;
+        }
+
+        //Sort the ranges by start, to stop at the first one starting after each gap
+        List<Integer> order = new ArrayList<>(ranges.size());
+        long unionFrom = Long.MAX_VALUE;
+        long unionTo = Long.MIN_VALUE;
+        for (int i = 0; i < ranges.size(); i++) {
+            order.add(i);
+            unionFrom = Math.min(unionFrom, ranges.get(i).getFrom().toEpochDay());
+            unionTo = Math.max(unionTo, ranges.get(i).getTo().toEpochDay());
+        }
+        order.sort(Comparator.comparing(i -> ranges.get(i).getFrom()));
+
+        lock.readLock().lock();
+        try {
+            //Start from the gap containing the union start, if any
+            Long firstKey = gaps.floorKey(unionFrom);
+            for (Map.Entry<Long, Long> gap : gaps.subMap(firstKey != null ? firstKey : unionFrom, true, unionTo, false).entrySet()) {
+                for (int i : order) {
+                    long fromDay = ranges.get(i).getFrom().toEpochDay();
+                    if (fromDay >= gap.getValue()) {
+                        break; //This range and the next ones start after the gap
+                    }
+                    long start = Math.max(gap.getKey(), fromDay);
+                    long end = Math.min(gap.getValue(), ranges.get(i).getTo().toEpochDay());
+                    if (start < end) {
+                        availableRanges.get(i).add(new TimeRangeResource(LocalDate.ofEpochDay(start), LocalDate.ofEpochDay(end)));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return availableRanges;
+    }
+
+    /**
+     * Applies a reservation change: the previous nights are freed and the new ones occupied
+     * It runs before other listeners, so caches invalidated by the same event are refilled with the new gaps
+     *
+     * @param event Reservation change
+     */
+    @EventListener
+    @Order(0)
+    public void onReservationChanged(ReservationChangedEvent event) {
+        if (!event.changesAvailability()) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            apply(gaps, event);
+            if (changesDuringRebuild != null) {
+                changesDuringRebuild.add(event);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Frees the previous nights of a change and occupies the new ones
+     * Applying a change again leaves the gaps the same
+     */
+    private static void apply(NavigableMap<Long, Long> gaps, ReservationChangedEvent event) {
+        if (event.getPreviousArrivalDate() != null) {
+            free(gaps, event.getPreviousArrivalDate().toEpochDay(), event.getPreviousDepartureDate().toEpochDay());
+        }
+        if (event.getArrivalDate() != null) {
+            occupy(gaps, event.getArrivalDate().toEpochDay(), event.getDepartureDate().toEpochDay());
+        }
+    }
+
+    /**
+     * Removes a period from the gaps, splitting the gaps that contain its start or end
+     */
+    static void occupy(NavigableMap<Long, Long> gaps, long arrivalDay, long departureDay) {
+        Long firstKey = gaps.floorKey(arrivalDay);
+        Iterator<Map.Entry<Long, Long>> iterator = gaps.subMap(firstKey != null ? firstKey : arrivalDay, true, departureDay, false)
+                .entrySet().iterator();
+
+        List<long[]> remainders = new ArrayList<>(2);
+        while (iterator.hasNext()) {
+            //Read the entry before removing it, as the tree may reuse it for the next one
+            Map.Entry<Long, Long> gap = iterator.next();
+            long gapStart = gap.getKey();
+            long gapEnd = gap.getValue();
+            if (gapEnd <= arrivalDay) {
+                continue; //Gap before the period
+            }
+            iterator.remove();
+            if (gapStart < arrivalDay) {
+                remainders.add(new long[] { gapStart, arrivalDay });
+            }
+            if (gapEnd > departureDay) {
+                remainders.add(new long[] { departureDay, gapEnd });
+            }
+        }
+
+        for (long[] remainder : remainders) {
+            gaps.put(remainder[0], remainder[1]);
+        }
+    }
+
+    /**
+     * Adds a period to the gaps, merging it with the adjacent or overlapping gaps
+     */
+    static void free(NavigableMap<Long, Long> gaps, long arrivalDay, long departureDay) {
+        long start = arrivalDay;
+        long end = departureDay;
+
+        //Merge with the gap that starts before and reaches the period
+        Map.Entry<Long, Long> previous = gaps.floorEntry(start);
+        if ((previous != null) && (previous.getValue() >= start)) {
+            start = previous.getKey();
+            end = Math.max(end, previous.getValue());
+            gaps.remove(previous.getKey());
+        }
+
+        //Merge with the gaps that start within the period or right after it
+        Iterator<Map.Entry<Long, Long>> iterator = gaps.subMap(start, true, end, true).entrySet().iterator();
+        while (iterator.hasNext()) {
+            end = Math.max(end, iterator.next().getValue());
+            iterator.remove();
+        }
+
+        gaps.put(start, end);
+    }
+}
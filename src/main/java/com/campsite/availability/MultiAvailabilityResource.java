@@ -0,0 +1,20 @@
+package com.campsite.availability;
+
+import org.springframework.hateoas.ResourceSupport;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class MultiAvailabilityResource extends ResourceSupport {
+
+    //Availability of each requested range, in the order they were requested
+    private List<AvailabilityResource> availabilities = new ArrayList<>();
+
+    public List<AvailabilityResource> getAvailabilities() {
+        return availabilities;
+    }
+
+    public void setAvailabilities(List<AvailabilityResource> availabilities) {
+        this.availabilities = availabilities;
+    }
+}
@@ -0,0 +1,55 @@
+package com.campsite.datasource;
+
+/**
+ * Route of the connections opened by the current thread
+ * The route can be read by the caches, which must not keep what was read from a replica nor serve a pinned client
+ */
+public final class DataSourceRoute {
+
+    //Set while a method marked as ReplicaRead runs
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+
+    //Set while the request of a client that has just written is handled
+    private static final ThreadLocal<Boolean> PINNED_TO_PRIMARY = new ThreadLocal<>();
+
+    private DataSourceRoute() {
+    }
+
+    /**
+     * @return true if the connections opened now can come from a replica
+     */
+    public static boolean isReplicaRead() {
+        return (REPLICA_READ.get() != null) && (PINNED_TO_PRIMARY.get() == null);
+    }
+
+    /**
+     * Starts a replica read
+     * @return true if the thread was already in a replica read, to be given to endReplicaRead
+     */
+    static boolean startReplicaRead() {
+        boolean started = REPLICA_READ.get() != null;
+        REPLICA_READ.set(Boolean.TRUE);
+        return started;
+    }
+
+    static void endReplicaRead(boolean alreadyStarted) {
+        if (!alreadyStarted) {
+            REPLICA_READ.remove();
+        }
+    }
+
+    /**
+     * @return true if the client of the current request has just written, so it must read from the primary
+     */
+    public static boolean isPinnedToPrimary() {
+        return PINNED_TO_PRIMARY.get() != null;
+    }
+
+    static void pinToPrimary() {
+        PINNED_TO_PRIMARY.set(Boolean.TRUE);
+    }
+
+    static void unpin() {
+        PINNED_TO_PRIMARY.remove();
+    }
+}
@@ -0,0 +1,86 @@
+package com.campsite.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Data sources of the primary database and its read replicas
+ *
+ * Enabled by setting campsite.datasource.replica-urls with the comma separated JDBC URLs of the replicas. The primary
+ * is still configured with the spring.datasource properties and gets every connection but the ones of the replica
+ * reads. The replicas share the user and password of the primary unless campsite.datasource.replica-username and
+ * replica-password are set.
+ */
+@Configuration
+@ConditionalOnProperty(name = DataSourceRoutingConfiguration.REPLICAS_PROPERTY)
+public class DataSourceRoutingConfiguration {
+
+    public static final String REPLICAS_PROPERTY = "campsite.datasource.replica-urls";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Environment environment;
+
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    /**
+     * The primary pool is built here instead of being a bean of its own: a second DataSource bean would be initialized
+     * with the schema scripts through this one while it is still being created
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties,
+                                 @Value("${" + REPLICAS_PROPERTY + "}") String[] urls,
+                                 @Value("${campsite.datasource.replica-username:${spring.datasource.username:}}") String username,
+                                 @Value("${campsite.datasource.replica-password:${spring.datasource.password:}}") String password,
+                                 @Value("${campsite.datasource.replica-max-pool-size:10}") int maxPoolSize) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        primary.setPoolName("primary");
+        primary.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+        pools.add(primary);
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < urls.length; i++) {
+            HikariDataSource replica = DataSourceBuilder.create()
+                    .type(HikariDataSource.class)
+                    .url(urls[i].trim())
+                    .username(username)
+                    .password(password)
+                    .build();
+            replica.setPoolName("replica-" + i);
+            replica.setMaximumPoolSize(maxPoolSize);
+            replica.setReadOnly(true);
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            pools.add(replica);
+            replicas.add(replica);
+        }
+        return new ReadWriteRoutingDataSource(primary, replicas);
+    }
+
+    @PreDestroy
+    public void closePools() {
+        for (HikariDataSource pool : pools) {
+            pool.close();
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.campsite.datasource;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Pins the reads of the clients to the primary for campsite.datasource.read-your-writes.pin-ms after each of their
+ * writes. Disabled with 0
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnProperty(name = DataSourceRoutingConfiguration.REPLICAS_PROPERTY)
+public class ReadYourWritesConfiguration implements WebMvcConfigurer {
+
+    @Value("${campsite.datasource.read-your-writes.pin-ms:2000}")
+    private long pinMs;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (pinMs > 0) {
+            registry.addInterceptor(new ReadYourWritesInterceptor(pinMs)).addPathPatterns("/campsite/**");
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.campsite.datasource;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Sends to the primary the reads of a client that has just written, so it does not miss its own writes while the
+ * replicas catch up
+ * A write sets a cookie with the time until which the client is pinned to the primary. It is kept by the client, so
+ * the read is pinned whatever instance answers it. Clients that do not keep cookies always read from the replicas.
+ */
+class ReadYourWritesInterceptor implements HandlerInterceptor {
+
+    static final String COOKIE = "campsite-primary-until";
+
+    private final long pinMs;
+
+    ReadYourWritesInterceptor(long pinMs) {
+        this.pinMs = pinMs;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        long now = System.currentTimeMillis();
+        if (!HttpMethod.GET.matches(request.getMethod()) && !HttpMethod.HEAD.matches(request.getMethod())) {
+            //Set before the write, the response may be committed when it finishes
+            Cookie cookie = new Cookie(COOKIE, String.valueOf(now + pinMs));
+            cookie.setMaxAge((int) ((pinMs + 999) / 1000));
+            cookie.setPath(request.getContextPath().isEmpty() ? "/" : request.getContextPath());
+            cookie.setHttpOnly(true);
+            response.addCookie(cookie);
+        } else if (pinnedUntil(request) > now) {
+            DataSourceRoute.pinToPrimary();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        DataSourceRoute.unpin();
+    }
+
+    private static long pinnedUntil(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies != null) {
+            for (Cookie cookie : cookies) {
+                if (COOKIE.equals(cookie.getName())) {
+                    try {
+                        return Long.parseLong(cookie.getValue());
+                    } catch (NumberFormatException e) {
+                        return 0;
+                    }
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,19 @@
+package com.campsite.datasource;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a read-only method whose queries can be answered by a replica
+ * When replicas are configured, the connections opened during the method come from one of them, unless a transaction
+ * is already open or the client is pinned to the primary after a write of its own (see ReadYourWritesInterceptor).
+ * The method must not write: a replica may not accept it, and it would not be seen by the primary
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+public @interface ReplicaRead {
+}
@@ -0,0 +1,32 @@
+package com.campsite.datasource;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes to the replicas the connections opened by the methods marked as ReplicaRead
+ */
+@Aspect
+@Component
+@ConditionalOnProperty(name = DataSourceRoutingConfiguration.REPLICAS_PROPERTY)
+public class ReplicaReadAspect {
+
+    @Around("@annotation(com.campsite.datasource.ReplicaRead)")
+    public Object route(ProceedingJoinPoint joinPoint) throws Throwable {
+        //An open transaction already has its connection, and may have written with it
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return joinPoint.proceed();
+        }
+
+        boolean alreadyStarted = DataSourceRoute.startReplicaRead();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            DataSourceRoute.endReplicaRead(alreadyStarted);
+        }
+    }
+}
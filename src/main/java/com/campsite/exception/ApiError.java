@@ -20,6 +20,14 @@ public class ApiError {
     public ApiError() {
     }
 
+    public ApiError(int status, String error, String message, String path, LocalDateTime timestamp) {
+        this.status = status;
+        this.error = error;
+        this.message = message;
+        this.path = path;
+        this.timestamp = timestamp;
+    }
+
     public LocalDateTime getTimestamp() {
         return timestamp;
     }
@@ -0,0 +1,81 @@
+package com.campsite.exception;
+
+import org.springframework.http.HttpStatus;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Builds the bodies of the error responses
+ * The timestamp has millisecond precision and is shared by the errors built in the same millisecond, instead of
+ * reading the default time zone every time.
+ */
+public final class ApiErrors {
+
+    //Error of each status a rejection is answered with
+    private static final Map<HttpStatus, String> ERRORS = new EnumMap<>(HttpStatus.class);
+
+    private static final Clock CLOCK = Clock.systemDefaultZone();
+
+    private static volatile Timestamp lastTimestamp = new Timestamp(Long.MIN_VALUE, null);
+
+    static {
+        ERRORS.put(HttpStatus.NOT_FOUND, "Not found");
+        ERRORS.put(HttpStatus.BAD_REQUEST, "Bad request");
+        ERRORS.put(HttpStatus.CONFLICT, "Conflict");
+        ERRORS.put(HttpStatus.SERVICE_UNAVAILABLE, "Service unavailable");
+    }
+
+    private ApiErrors() {
+    }
+
+    /**
+     * Builds the error of a rejected request
+     *
+     * @param status Status of the response: 404, 400, 409 or 503
+     * @param message Message of the exception
+     * @param path Path of the request
+     * @return Error
+     */
+    public static ApiError rejection(HttpStatus status, String message, String path) {
+        return error(status, ERRORS.get(status), message, path);
+    }
+
+    /**
+     * Builds an error
+     *
+     * @param status Status of the response
+     * @param error Description of the status
+     * @param message Error message
+     * @param path Path of the request
+     * @return Error
+     */
+    public static ApiError error(HttpStatus status, String error, String message, String path) {
+        return new ApiError(status.value(), error, message, path, now());
+    }
+
+    private static LocalDateTime now() {
+        long millis = CLOCK.millis();
+        Timestamp timestamp = lastTimestamp;
+        if (timestamp.millis != millis) {
+            timestamp = new Timestamp(millis, LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), CLOCK.getZone()));
+            lastTimestamp = timestamp;
+        }
+        return timestamp.value;
+    }
+
+    private static class Timestamp {
+
+        private final long millis;
+
+        private final LocalDateTime value;
+
+        private Timestamp(long millis, LocalDateTime value) {
+            this.millis = millis;
+            this.value = value;
+        }
+    }
+}
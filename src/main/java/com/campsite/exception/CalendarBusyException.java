@@ -0,0 +1,8 @@
+package com.campsite.exception;
+
+public class CalendarBusyException extends RejectedRequestException {
+
+    public CalendarBusyException(String s) {
+        super(s);
+    }
+}
@@ -1,5 +1,8 @@
 package com.campsite.exception;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public enum ErrorMessages
 {
     RESERVATION_NOT_FOUND("There is no reservation with the given code"),
@@ -13,7 +16,27 @@ public enum ErrorMessages
     ARRIVAL_DATE_TOO_EARLY("The campsite can be reserved minimum 1 day ahead of arrival"),
     ARRIVAL_DATE_TOO_LATE("The campsite can be reserved up to one month in advance"),
     MAX_RANGE_EXCEEDED("The max reservation time is 3 days"),
-    AVAILABILITY_MISSING_PARAMETER("You must specify both 'from' and 'to' parameters or none of them");
+    AVAILABILITY_MISSING_PARAMETER("You must specify both 'from' and 'to' parameters or none of them"),
+    AVAILABILITY_MISSING_RANGES("You must specify at least one 'range' parameter"),
+    AVAILABILITY_TOO_MANY_RANGES("Too many ranges requested"),
+    INVALID_RANGE_FORMAT("Ranges must have the format yyyy-MM-dd/yyyy-MM-dd"),
+    CALENDAR_BUSY("The campsite calendar is busy, please try again later"),
+    TOO_MANY_SUBSCRIBERS("Too many clients are following the availability, please try again later"),
+    WRITES_OVERLOADED("Too many reservations are being made at the same time, please try again later"),
+    EMPTY_BATCH("You must provide at least one reservation"),
+    BATCH_TOO_LARGE("The batch has more reservations than allowed"),
+    BATCH_ABORTED("The reservation was not made because another reservation of the batch was rejected"),
+    INVALID_IDEMPOTENCY_KEY("The Idempotency-Key header must have between 1 and 255 characters"),
+    IDEMPOTENCY_KEY_IN_PROGRESS("A request with the same Idempotency-Key is in progress, please try again later"),
+    IDEMPOTENCY_KEY_REUSED("The Idempotency-Key was already used for a different request");
+
+    private static final Map<String, ErrorMessages> BY_MESSAGE = new HashMap<>();
+
+    static {
+        for (ErrorMessages errorMessage : values()) {
+            BY_MESSAGE.put(errorMessage.getMessage(), errorMessage);
+        }
+    }
 
     private String message;
 
@@ -24,4 +47,14 @@ public enum ErrorMessages
     public String getMessage() {
         return message;
     }
-}
\ No newline at end of file
+
+    /**
+     * Finds the error with the given message
+     *
+     * @param message Message of an exception
+     * @return Error with that message, or null if there is none
+     */
+    public static ErrorMessages fromMessage(String message) {
+        return BY_MESSAGE.get(message);
+    }
+}
@@ -0,0 +1,8 @@
+package com.campsite.exception;
+
+public class IdempotencyConflictException extends RejectedRequestException {
+
+    public IdempotencyConflictException(String s) {
+        super(s);
+    }
+}
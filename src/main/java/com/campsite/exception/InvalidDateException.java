@@ -1,6 +1,6 @@
 package com.campsite.exception;
 
-public class InvalidDateException extends RuntimeException {
+public class InvalidDateException extends RejectedRequestException {
 
     public InvalidDateException(String s) {
         super(s);
@@ -1,6 +1,6 @@
 package com.campsite.exception;
 
-public class InvalidReservationException extends RuntimeException {
+public class InvalidReservationException extends RejectedRequestException {
     public InvalidReservationException(String s) {
         super(s);
     }
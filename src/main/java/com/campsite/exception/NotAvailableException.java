@@ -1,8 +1,12 @@
 package com.campsite.exception;
 
-public class NotAvailableException extends RuntimeException {
+public class NotAvailableException extends RejectedRequestException {
 
     public NotAvailableException(String s) {
         super(s);
     }
+
+    public NotAvailableException(String s, Throwable cause) {
+        super(s, cause);
+    }
 }
@@ -0,0 +1,8 @@
+package com.campsite.exception;
+
+public class OverloadedException extends RejectedRequestException {
+
+    public OverloadedException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,18 @@
+package com.campsite.exception;
+
+/**
+ * Base of the exceptions of the requests rejected for an expected reason (invalid data, a period not available, the
+ * calendar busy...)
+ * They are thrown on the normal path of the requests and answered with an error response, never logged, so they are
+ * created without a stack trace.
+ */
+public abstract class RejectedRequestException extends RuntimeException {
+
+    protected RejectedRequestException(String message) {
+        super(message, null, false, false);
+    }
+
+    protected RejectedRequestException(String message, Throwable cause) {
+        super(message, cause, false, false);
+    }
+}
@@ -1,6 +1,6 @@
 package com.campsite.exception;
 
-public class ReservationNotFoundException extends RuntimeException {
+public class ReservationNotFoundException extends RejectedRequestException {
 
     public ReservationNotFoundException(String s) {
         super(s);
@@ -1,32 +1,52 @@
 package com.campsite.exception;
 
 import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.beans.TypeMismatchException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.web.bind.annotation.ControllerAdvice;
 import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import org.springframework.web.servlet.mvc.method.annotation.ResponseEntityExceptionHandler;
 
-import java.time.LocalDateTime;
+import javax.annotation.PostConstruct;
+import java.util.EnumMap;
+import java.util.Map;
 
 @ControllerAdvice
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionHandler {
 
+    private static final String REJECTIONS = "campsite.rejections";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //Counter of the requests rejected for each reason
+    private final Map<ErrorMessages, Counter> rejections = new EnumMap<>(ErrorMessages.class);
+
+    @PostConstruct
+    public void init() {
+        for (ErrorMessages reason : ErrorMessages.values()) {
+            rejections.put(reason, rejectionCounter(reason.name()));
+        }
+    }
+
     @ExceptionHandler(value = { ReservationNotFoundException.class })
     protected ResponseEntity<Object> handleNotFound(
             RuntimeException ex, WebRequest request) {
 
-        ApiError error = new ApiError();
-        error.setStatus(HttpStatus.NOT_FOUND.value());
-        error.setMessage(ex.getMessage());
-        error.setError("Not found");
-        error.setPath(request.getDescription(false).replaceAll("uri=", ""));
-        error.setTimestamp(LocalDateTime.now());
+        countRejection(ex.getMessage());
+
+        ApiError error = ApiErrors.rejection(HttpStatus.NOT_FOUND, ex.getMessage(), path(request));
 
         return new ResponseEntity<>(error, HttpStatus.NOT_FOUND);
     }
@@ -35,26 +55,46 @@ public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionH
     protected ResponseEntity<Object> handleInvalidDate(
             RuntimeException ex, WebRequest request) {
 
-        ApiError error = new ApiError();
-        error.setStatus(HttpStatus.BAD_REQUEST.value());
-        error.setMessage(ex.getMessage());
-        error.setError("Bad request");
-        error.setPath(request.getDescription(false).replaceAll("uri=", ""));
-        error.setTimestamp(LocalDateTime.now());
+        countRejection(ex.getMessage());
+
+        ApiError error = ApiErrors.rejection(HttpStatus.BAD_REQUEST, ex.getMessage(), path(request));
 
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
 
+    @ExceptionHandler(value = { IdempotencyConflictException.class })
+    protected ResponseEntity<Object> handleConflict(
+            RuntimeException ex, WebRequest request) {
+
+        countRejection(ex.getMessage());
+
+        ApiError error = ApiErrors.rejection(HttpStatus.CONFLICT, ex.getMessage(), path(request));
+
+        return new ResponseEntity<>(error, HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(value = { CalendarBusyException.class, OverloadedException.class })
+    protected ResponseEntity<Object> handleServiceUnavailable(
+            RuntimeException ex, WebRequest request) {
+
+        countRejection(ex.getMessage());
+
+        ApiError error = ApiErrors.rejection(HttpStatus.SERVICE_UNAVAILABLE, ex.getMessage(), path(request));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, "1");
+
+        return new ResponseEntity<>(error, headers, HttpStatus.SERVICE_UNAVAILABLE);
+    }
+
     @Override
     protected ResponseEntity<Object> handleTypeMismatch(
             TypeMismatchException ex, HttpHeaders headers, HttpStatus status, WebRequest request) {
 
-        ApiError error = new ApiError();
-        error.setStatus(HttpStatus.BAD_REQUEST.value());
-        error.setMessage("Parameter " + "'" + ((MethodArgumentTypeMismatchException) ex).getName() + "' has an invalid format");
-        error.setError("Type mismatch");
-        error.setPath(request.getDescription(false).replaceAll("uri=", ""));
-        error.setTimestamp(LocalDateTime.now());
+        rejectionCounter("TYPE_MISMATCH").increment();
+
+        ApiError error = ApiErrors.error(HttpStatus.BAD_REQUEST, "Type mismatch",
+                "Parameter " + "'" + ((MethodArgumentTypeMismatchException) ex).getName() + "' has an invalid format", path(request));
 
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
@@ -63,20 +103,41 @@ public class RestResponseEntityExceptionHandler extends ResponseEntityExceptionH
     protected ResponseEntity<Object> handleHttpMessageNotReadable(
             HttpMessageNotReadableException ex, HttpHeaders headers, HttpStatus status, WebRequest request) {
 
-        ApiError error = new ApiError();
-        error.setStatus(HttpStatus.BAD_REQUEST.value());
+        rejectionCounter("MESSAGE_NOT_READABLE").increment();
+
+        ApiError error = ApiErrors.error(HttpStatus.BAD_REQUEST, "Message not readable", null, path(request));
 
         try {
             error.setMessage("Field " + "'" + ((InvalidFormatException) ex.getCause()).getPath().get(0).getFieldName()
                     + "' has an invalid value: " + "'" + ((InvalidFormatException) ex.getCause()).getValue().toString() + "'");
         } catch (Exception e) {}
 
-        error.setError("Message not readable");
-        error.setPath(request.getDescription(false).replaceAll("uri=", ""));
-        error.setTimestamp(LocalDateTime.now());
-
         return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
     }
 
+    /**
+     * @return Path of the request, as in its description without the "uri=" prefix
+     */
+    private static String path(WebRequest request) {
+        if (request instanceof ServletWebRequest) {
+            return ((ServletWebRequest) request).getRequest().getRequestURI();
+        }
+        return request.getDescription(false).replaceAll("uri=", "");
+    }
+
+    private void countRejection(String message) {
+        ErrorMessages reason = ErrorMessages.fromMessage(message);
+        if (reason != null) {
+            rejections.get(reason).increment();
+        } else {
+            rejectionCounter("OTHER").increment();
+        }
+    }
 
+    private Counter rejectionCounter(String reason) {
+        return Counter.builder(REJECTIONS)
+                .description("Requests rejected by reason")
+                .tag("reason", reason)
+                .register(meterRegistry);
+    }
 }
@@ -0,0 +1,154 @@
+package com.campsite.idempotency;
+
+import com.campsite.exception.ErrorMessages;
+import com.campsite.exception.IdempotencyConflictException;
+import com.campsite.exception.InvalidReservationException;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Executes the requests made with an Idempotency-Key header at most once
+ *
+ * The first request with a key is executed and its response, if successful, is stored. A retry with the same key
+ * and request gets the stored response again without being executed. A failed request is not stored, so it can be
+ * retried with the same key. If the response of a successful request can't be serialized only its status is stored,
+ * and if it can't be stored the key is left in progress until it expires.
+ */
+@Service
+public class IdempotencyService implements MeterBinder {
+
+    public static final String KEY_HEADER = "Idempotency-Key";
+
+    //Set in the responses replayed from the store
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyService.class);
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${campsite.idempotency.ttl-ms:86400000}")
+    private long ttlMillis;
+
+    private final AtomicLong replays = new AtomicLong();
+
+    /**
+     * Executes a request unless it was already executed with the same key
+     *
+     * @param key Idempotency key of the request, or null to execute it as usual
+     * @param request Method and path of the request
+     * @param body Body of the request
+     * @param action Executes the request
+     * @return Response of the request, or the stored one if it was already executed
+     * @throws InvalidReservationException if the key is empty or too long
+     * @throws IdempotencyConflictException if the key is being used by another request in progress, or it was used
+     * for a different request
+     */
+    public ResponseEntity<Object> execute(String key, String request, Object body, Supplier<ResponseEntity<Object>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isEmpty() || (key.length() > MAX_KEY_LENGTH)) {
+            throw new InvalidReservationException(ErrorMessages.INVALID_IDEMPOTENCY_KEY.getMessage());
+        }
+
+        String fingerprint = fingerprint(request, body);
+        IdempotentResponse previous = idempotencyStore.reserve(key, fingerprint, ttlMillis);
+        if (previous != null) {
+            if (!previous.getFingerprint().equals(fingerprint)) {
+                throw new IdempotencyConflictException(ErrorMessages.IDEMPOTENCY_KEY_REUSED.getMessage());
+            }
+            if (!previous.isCompleted()) {
+                throw new IdempotencyConflictException(ErrorMessages.IDEMPOTENCY_KEY_IN_PROGRESS.getMessage());
+            }
+            replays.incrementAndGet();
+            HttpHeaders headers = new HttpHeaders();
+            headers.set(REPLAYED_HEADER, "true");
+            return new ResponseEntity<>(previous.getBody(), headers, HttpStatus.valueOf(previous.getStatus()));
+        }
+
+        ResponseEntity<Object> response;
+        try {
+            response = action.get();
+        } catch (Throwable e) {
+            //Errors too, otherwise the retries get a 409 until the key expires
+            idempotencyStore.release(key);
+            throw e;
+        }
+
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            idempotencyStore.release(key);
+            return response;
+        }
+        //The request was made, so from here on the key is never released: a retry would make it again
+        byte[] storedBody;
+        try {
+            storedBody = objectMapper.writeValueAsBytes(response.getBody());
+        } catch (JsonProcessingException e) {
+            //The retries get the status without the body
+            logger.warn("The response of the idempotency key {} could not be serialized", key, e);
+            storedBody = null;
+        }
+        try {
+            idempotencyStore.complete(key, response.getStatusCodeValue(), storedBody);
+        } catch (RuntimeException e) {
+            //The retries get a 409 until the key expires
+            logger.warn("The response of the idempotency key {} could not be stored", key, e);
+        }
+        return response;
+    }
+
+    /**
+     * @return Number of responses replayed from the store
+     */
+    public long getReplays() {
+        return replays.get();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("campsite.idempotency.replays", replays, AtomicLong::get)
+                .description("Responses replayed for a repeated Idempotency-Key")
+                .register(registry);
+    }
+
+    /**
+     * @return Hash of the method, path and body of a request
+     */
+    private String fingerprint(String request, Object body) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(request.getBytes(StandardCharsets.UTF_8));
+            digest.update(objectMapper.writeValueAsBytes(body));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.campsite.idempotency;
+
+/**
+ * Stores the responses of the requests made with an Idempotency-Key header, so a retry gets the same response
+ *
+ * A key is first reserved by the request using it, and then either completed with its response or released if the
+ * request failed, so it can be retried. Keys expire after a while.
+ *
+ * The implementation is selected with the property campsite.idempotency.store:
+ *  - memory (default): bounded map in this JVM. A retry reaching another node is executed again
+ *  - jdbc: idempotency_keys table, shared by all the nodes
+ */
+public interface IdempotencyStore {
+
+    String STORE_PROPERTY = "campsite.idempotency.store";
+
+    /**
+     * Reserves a key for a request, unless it is already used
+     *
+     * @param key Idempotency key
+     * @param fingerprint Hash of the request made with the key
+     * @param ttlMillis How long the key is kept
+     * @return Null if the key was reserved, or the response stored for it (not completed if the request is in progress)
+     */
+    IdempotentResponse reserve(String key, String fingerprint, long ttlMillis);
+
+    /**
+     * Stores the response of the request that reserved a key
+     *
+     * @param key Idempotency key
+     * @param status HTTP status of the response
+     * @param body Serialized body of the response
+     */
+    void complete(String key, int status, byte[] body);
+
+    /**
+     * Releases a reserved key, so the request can be retried
+     *
+     * @param key Idempotency key
+     */
+    void release(String key);
+}
@@ -0,0 +1,47 @@
+package com.campsite.idempotency;
+
+/**
+ * Response stored for an idempotency key
+ */
+public class IdempotentResponse {
+
+    private final String fingerprint;
+
+    //Zero while the request is in progress
+    private final int status;
+
+    private final byte[] body;
+
+    private final long expiresAt;
+
+    public IdempotentResponse(String fingerprint, int status, byte[] body, long expiresAt) {
+        this.fingerprint = fingerprint;
+        this.status = status;
+        this.body = body;
+        this.expiresAt = expiresAt;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public byte[] getBody() {
+        return body;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    public boolean isCompleted() {
+        return status != 0;
+    }
+
+    boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+}
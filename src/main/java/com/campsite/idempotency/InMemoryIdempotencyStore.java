@@ -0,0 +1,58 @@
+package com.campsite.idempotency;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Idempotency keys kept in this JVM
+ * The keys are kept in the order they were reserved: an expired key is removed when it is used again, and the oldest
+ * one is evicted when the store is full
+ */
+@Component
+@ConditionalOnProperty(name = IdempotencyStore.STORE_PROPERTY, havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final int maxSize;
+
+    private final Map<String, IdempotentResponse> responses;
+
+    public InMemoryIdempotencyStore(@Value("${campsite.idempotency.max-size:10000}") int maxSize) {
+        this.maxSize = maxSize;
+        this.responses = new LinkedHashMap<String, IdempotentResponse>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, IdempotentResponse> eldest) {
+                return size() > InMemoryIdempotencyStore.this.maxSize;
+            }
+        };
+    }
+
+    @Override
+    public synchronized IdempotentResponse reserve(String key, String fingerprint, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        IdempotentResponse response = responses.get(key);
+        if ((response != null) && !response.isExpired(now)) {
+            return response;
+        }
+        //Removed first so the key goes to the end of the eviction order
+        responses.remove(key);
+        responses.put(key, new IdempotentResponse(fingerprint, 0, null, now + ttlMillis));
+        return null;
+    }
+
+    @Override
+    public synchronized void complete(String key, int status, byte[] body) {
+        IdempotentResponse reserved = responses.get(key);
+        if (reserved != null) {
+            responses.put(key, new IdempotentResponse(reserved.getFingerprint(), status, body, reserved.getExpiresAt()));
+        }
+    }
+
+    @Override
+    public synchronized void release(String key) {
+        responses.remove(key);
+    }
+}
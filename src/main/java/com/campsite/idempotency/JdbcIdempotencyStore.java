@@ -0,0 +1,72 @@
+package com.campsite.idempotency;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Idempotency keys kept in the idempotency_keys table, shared by all the nodes
+ * The primary key guarantees that only one request reserves a key. The expired keys are deleted periodically
+ */
+@Component
+@ConditionalOnProperty(name = IdempotencyStore.STORE_PROPERTY, havingValue = "jdbc")
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final String INSERT =
+            "INSERT INTO idempotency_keys (idempotency_key, fingerprint, status, expires_at) VALUES (?, ?, 0, ?)";
+
+    private static final String SELECT =
+            "SELECT fingerprint, status, body, expires_at FROM idempotency_keys WHERE idempotency_key = ?";
+
+    private static final String DELETE_EXPIRED_KEY = "DELETE FROM idempotency_keys WHERE idempotency_key = ? AND expires_at <= ?";
+
+    private static final String COMPLETE = "UPDATE idempotency_keys SET status = ?, body = ? WHERE idempotency_key = ?";
+
+    private static final String DELETE = "DELETE FROM idempotency_keys WHERE idempotency_key = ?";
+
+    private static final String DELETE_EXPIRED = "DELETE FROM idempotency_keys WHERE expires_at <= ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Override
+    public IdempotentResponse reserve(String key, String fingerprint, long ttlMillis) {
+        long now = System.currentTimeMillis();
+        //Two attempts: the second one after deleting the key if it expired
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                jdbcTemplate.update(INSERT, key, fingerprint, now + ttlMillis);
+                return null;
+            } catch (DuplicateKeyException e) {
+                List<IdempotentResponse> responses = jdbcTemplate.query(SELECT, (rs, rowNum) ->
+                        new IdempotentResponse(rs.getString(1), rs.getInt(2), rs.getBytes(3), rs.getLong(4)), key);
+                if (!responses.isEmpty() && !responses.get(0).isExpired(now)) {
+                    return responses.get(0);
+                }
+                jdbcTemplate.update(DELETE_EXPIRED_KEY, key, now);
+            }
+        }
+        //Reserved by another request while retrying
+        return new IdempotentResponse(fingerprint, 0, null, now + ttlMillis);
+    }
+
+    @Override
+    public void complete(String key, int status, byte[] body) {
+        jdbcTemplate.update(COMPLETE, status, body, key);
+    }
+
+    @Override
+    public void release(String key) {
+        jdbcTemplate.update(DELETE, key);
+    }
+
+    @Scheduled(fixedDelayString = "${campsite.idempotency.purge-interval-ms:60000}")
+    public void purgeExpired() {
+        jdbcTemplate.update(DELETE_EXPIRED, System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,68 @@
+package com.campsite.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.aspectj.lang.reflect.MethodSignature;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every call to the Spring Data repositories of the application
+ *
+ * The calls are recorded in the campsite.repository timer, tagged with the repository and method names.
+ */
+@Aspect
+@Component
+public class RepositoryMetricsAspect {
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    //Timers of each repository proxy class and method. Inherited methods, like save, are shared by all repositories
+    private final Map<Class<?>, Map<Method, Timer>> timers = new ConcurrentHashMap<>();
+
+    @Around("execution(* org.springframework.data.repository.Repository+.*(..))")
+    public Object time(ProceedingJoinPoint joinPoint) throws Throwable {
+        Object repository = joinPoint.getThis();
+        Method method = ((MethodSignature) joinPoint.getSignature()).getMethod();
+        Timer timer = timers.computeIfAbsent(repository.getClass(), repositoryClass -> new ConcurrentHashMap<>())
+                .computeIfAbsent(method, repositoryMethod -> createTimer(repository, repositoryMethod));
+
+        long start = System.nanoTime();
+        try {
+            return joinPoint.proceed();
+        } finally {
+            timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private Timer createTimer(Object repository, Method method) {
+        return Timer.builder("campsite.repository")
+                .description("Time of the repository calls")
+                .tag("repository", repositoryName(repository))
+                .tag("method", method.getName())
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return Name of the repository interface declared in the application
+     */
+    private static String repositoryName(Object repository) {
+        for (Class<?> repositoryInterface : AopProxyUtils.proxiedUserInterfaces(repository)) {
+            if (repositoryInterface.getName().startsWith("com.campsite.")) {
+                return repositoryInterface.getSimpleName();
+            }
+        }
+        return repository.getClass().getSimpleName();
+    }
+}
@@ -0,0 +1,313 @@
+package com.campsite.reactive;
+
+import com.campsite.admission.AdaptiveConcurrencyLimiter;
+import com.campsite.availability.AvailabilityService;
+import com.campsite.exception.ApiError;
+import com.campsite.exception.ApiErrors;
+import com.campsite.exception.CalendarBusyException;
+import com.campsite.exception.ErrorMessages;
+import com.campsite.exception.InvalidDateException;
+import com.campsite.exception.InvalidReservationException;
+import com.campsite.exception.NotAvailableException;
+import com.campsite.exception.OverloadedException;
+import com.campsite.exception.RejectedRequestException;
+import com.campsite.exception.ReservationNotFoundException;
+import com.campsite.reservation.Reservation;
+import com.campsite.reservation.ReservationBatchItem;
+import com.campsite.reservation.ReservationBatchResource;
+import com.campsite.reservation.ReservationResource;
+import com.campsite.reservation.ReservationResourceAssembler;
+import com.campsite.reservation.ReservationService;
+import com.fasterxml.jackson.databind.exc.InvalidFormatException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.codec.DecodingException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.server.ServerRequest;
+import org.springframework.web.reactive.function.server.ServerResponse;
+import org.springframework.web.server.ServerWebInputException;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Handlers of the campsite routes in the reactive mode, with the same media types and responses as CampsiteController
+ *
+ * The availability is answered from memory, so it runs on the event loop. The reservations are read and written with
+ * blocking JPA calls, which run on two bounded schedulers so they never block the event loop:
+ *  - readers: as many threads as connections in the pool
+ *  - writers: a single thread by default, so the writes of this node are queued and run one after the other instead
+ *    of waiting for each other's locks. The write coordinator still serializes the writes of different nodes.
+ *    A new reservation only holds it while it is queued for the group commit writer
+ * The writes queued are bounded by the adaptive concurrency limiter, as in the servlet mode
+ */
+@Component
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class CampsiteHandler {
+
+    static final MediaType AVAILABILITY = MediaType.valueOf("application/campsite-availability-response-v1-hal+json");
+    static final MediaType MULTI_AVAILABILITY = MediaType.valueOf("application/campsite-multi-availability-response-v1-hal+json");
+    static final MediaType RESERVATION_REQUEST = MediaType.valueOf("application/campsite-reservation-v1-hal+json");
+    static final MediaType RESERVATION_PATCH = MediaType.valueOf("application/campsite-reservation-patch-v1-hal+json");
+    static final MediaType RESERVATION_RESPONSE = MediaType.valueOf("application/campsite-reservation-response-v1-hal+json");
+    static final MediaType BATCH_REQUEST = MediaType.valueOf("application/campsite-reservation-batch-v1-hal+json");
+    static final MediaType BATCH_RESPONSE = MediaType.valueOf("application/campsite-reservation-batch-response-v1-hal+json");
+
+    private static final String REJECTIONS = "campsite.rejections";
+
+    @Autowired
+    private AvailabilityService availabilityService;
+
+    @Autowired
+    private ReservationService reservationService;
+
+    @Autowired
+    private ReservationResourceAssembler reservationResourceAssembler;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @Value("${campsite.reactive.reader-threads:10}")
+    private int readerThreads;
+
+    @Value("${campsite.reactive.writer-threads:1}")
+    private int writerThreads;
+
+    private Scheduler readers;
+
+    private Scheduler writers;
+
+    @PostConstruct
+    public void init() {
+        readers = newScheduler("reservation-reader-", readerThreads);
+        writers = newScheduler("reservation-writer-", writerThreads);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        readers.dispose();
+        writers.dispose();
+    }
+
+    public Mono<ServerResponse> getAvailability(ServerRequest request) {
+        return Mono.fromCallable(() -> availabilityService.getAvailability(dateParam(request, "from"), dateParam(request, "to")))
+                .flatMap(resource -> ServerResponse.ok().contentType(AVAILABILITY).syncBody(resource))
+                .onErrorResume(e -> error(request, e));
+    }
+
+    public Mono<ServerResponse> getAvailabilities(ServerRequest request) {
+        return Mono.fromCallable(() -> availabilityService.getAvailabilities(request.queryParams().get("range")))
+                .flatMap(resource -> ServerResponse.ok().contentType(MULTI_AVAILABILITY).syncBody(resource))
+                .onErrorResume(e -> error(request, e));
+    }
+
+    public Mono<ServerResponse> makeReservation(ServerRequest request) {
+        return body(request, ReservationResource.class)
+                .map(reservationResourceAssembler::toEntity)
+                .flatMap(entity -> admit(Mono.defer(() -> Mono.fromFuture(reservationService.addAsync(entity)))
+                        //The future wraps the rejections of the group commit
+                        .onErrorMap(CompletionException.class, e -> (e.getCause() != null) ? e.getCause() : e)
+                        .subscribeOn(writers)
+                        .publishOn(Schedulers.parallel()))) //Not on the group commit writer
+                .flatMap(entity -> ServerResponse.status(HttpStatus.CREATED).contentType(RESERVATION_RESPONSE)
+                        .syncBody(reservationResourceAssembler.toResource(entity)))
+                .onErrorResume(e -> error(request, e));
+    }
+
+    public Mono<ServerResponse> makeReservations(ServerRequest request) {
+        return body(request, ReservationBatchResource.class)
+                .flatMap(batchRequest -> {
+                    List<Reservation> entities = null;
+                    if (batchRequest.getReservations() != null) {
+                        entities = batchRequest.getReservations().stream()
+                                .map(reservationResourceAssembler::toEntity)
+                                .collect(Collectors.toList());
+                    }
+                    boolean allOrNothing = batchRequest.getMode() != ReservationBatchResource.Mode.BEST_EFFORT;
+                    List<Reservation> reservations = entities;
+                    return write(() -> reservationService.addAll(reservations, allOrNothing));
+                })
+                .flatMap(items -> {
+                    long created = items.stream().filter(item -> item.getStatus() == ReservationBatchItem.Status.CREATED).count();
+                    HttpStatus status = (created == items.size()) ? HttpStatus.CREATED : ((created > 0) ? HttpStatus.MULTI_STATUS : HttpStatus.BAD_REQUEST);
+                    return ServerResponse.status(status).contentType(BATCH_RESPONSE)
+                            .syncBody(reservationResourceAssembler.toBatchResource(items));
+                })
+                .onErrorResume(e -> error(request, e));
+    }
+
+    public Mono<ServerResponse> updateReservation(ServerRequest request) {
+        return body(request, ReservationResource.class)
+                .map(reservationRequest -> {
+                    Reservation entity = reservationResourceAssembler.toEntity(reservationRequest);
+                    entity.setId(request.pathVariable("id"));
+                    return entity;
+                })
+                .flatMap(entity -> write(() -> reservationService.update(entity)))
+                .flatMap(entity -> ServerResponse.ok().contentType(RESERVATION_RESPONSE)
+                        .syncBody(reservationResourceAssembler.toResource(entity)))
+                .onErrorResume(e -> error(request, e));
+    }
+
+    public Mono<ServerResponse> getReservation(ServerRequest request) {
+        return Mono.fromCallable(() -> reservationService.get(request.pathVariable("id")))
+                .subscribeOn(readers)
+                .flatMap(entity -> ServerResponse.ok().contentType(RESERVATION_RESPONSE)
+                        .syncBody(reservationResourceAssembler.toResource(entity)))
+                .onErrorResume(e -> error(request, e));
+    }
+
+    public Mono<ServerResponse> deleteReservation(ServerRequest request) {
+        return write(() -> {
+                    reservationService.delete(request.pathVariable("id"));
+                    return Boolean.TRUE;
+                })
+                .flatMap(deleted -> ServerResponse.noContent().build())
+                .onErrorResume(e -> error(request, e));
+    }
+
+    /**
+     * Runs a write on the writer scheduler, if the adaptive concurrency limiter admits it
+     */
+    private <T> Mono<T> write(Callable<T> action) {
+        return admit(Mono.fromCallable(action).subscribeOn(writers));
+    }
+
+    /**
+     * Subscribes to a write if the adaptive concurrency limiter admits it
+     */
+    private <T> Mono<T> admit(Mono<T> write) {
+        return Mono.defer(() -> {
+            if (!limiter.tryAcquire()) {
+                return Mono.error(new OverloadedException(ErrorMessages.WRITES_OVERLOADED.getMessage()));
+            }
+            long start = System.nanoTime();
+            AtomicBoolean dropped = new AtomicBoolean();
+            return write
+                    .doOnError(CalendarBusyException.class, e -> dropped.set(true))
+                    .doFinally(signal -> limiter.release(start, dropped.get()));
+        });
+    }
+
+    private static <T> Mono<T> body(ServerRequest request, Class<T> type) {
+        return request.bodyToMono(type)
+                .switchIfEmpty(Mono.error(new ServerWebInputException("Required request body is missing")));
+    }
+
+    /**
+     * @return Date of a query parameter, or null if it is missing
+     * @throws TypeMismatch if the date has an invalid format
+     */
+    private static LocalDate dateParam(ServerRequest request, String name) {
+        String value = request.queryParam(name).orElse(null);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return LocalDate.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new TypeMismatch(name);
+        }
+    }
+
+    /**
+     * Builds the error response of a failed request, as RestResponseEntityExceptionHandler does in the servlet mode
+     */
+    private Mono<ServerResponse> error(ServerRequest request, Throwable e) {
+        HttpStatus status;
+        String error;
+        String message = e.getMessage();
+        if (e instanceof ReservationNotFoundException) {
+            status = HttpStatus.NOT_FOUND;
+            error = "Not found";
+            countRejection(message);
+        } else if ((e instanceof InvalidDateException) || (e instanceof NotAvailableException) || (e instanceof InvalidReservationException)) {
+            status = HttpStatus.BAD_REQUEST;
+            error = "Bad request";
+            countRejection(message);
+        } else if ((e instanceof CalendarBusyException) || (e instanceof OverloadedException)) {
+            status = HttpStatus.SERVICE_UNAVAILABLE;
+            error = "Service unavailable";
+            countRejection(message);
+        } else if (e instanceof TypeMismatch) {
+            status = HttpStatus.BAD_REQUEST;
+            error = "Type mismatch";
+            meterRegistry.counter(REJECTIONS, "reason", "TYPE_MISMATCH").increment();
+        } else if ((e instanceof ServerWebInputException) || (e instanceof DecodingException)) {
+            status = HttpStatus.BAD_REQUEST;
+            error = "Message not readable";
+            message = notReadableMessage(e);
+            meterRegistry.counter(REJECTIONS, "reason", "MESSAGE_NOT_READABLE").increment();
+        } else {
+            return Mono.error(e);
+        }
+
+        ApiError body = (e instanceof RejectedRequestException)
+                ? ApiErrors.rejection(status, message, request.path())
+                : ApiErrors.error(status, error, message, request.path());
+
+        ServerResponse.BodyBuilder response = ServerResponse.status(status).contentType(MediaType.APPLICATION_JSON);
+        if (status == HttpStatus.SERVICE_UNAVAILABLE) {
+            response.header(HttpHeaders.RETRY_AFTER, "1");
+        }
+        return response.syncBody(body);
+    }
+
+    /**
+     * @return The field with an invalid value, if that is why the body could not be read
+     */
+    private static String notReadableMessage(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if ((cause instanceof InvalidFormatException) && !((InvalidFormatException) cause).getPath().isEmpty()) {
+                InvalidFormatException invalidFormat = (InvalidFormatException) cause;
+                return "Field " + "'" + invalidFormat.getPath().get(0).getFieldName()
+                        + "' has an invalid value: " + "'" + invalidFormat.getValue() + "'";
+            }
+        }
+        return (e instanceof ServerWebInputException) ? ((ServerWebInputException) e).getReason() : null;
+    }
+
+    private void countRejection(String message) {
+        ErrorMessages reason = ErrorMessages.fromMessage(message);
+        meterRegistry.counter(REJECTIONS, "reason", (reason != null) ? reason.name() : "OTHER").increment();
+    }
+
+    private static Scheduler newScheduler(String name, int threads) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Schedulers.fromExecutorService(Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, name + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }));
+    }
+
+    /**
+     * Query parameter with an invalid format
+     */
+    private static class TypeMismatch extends RuntimeException {
+
+        private TypeMismatch(String name) {
+            super("Parameter '" + name + "' has an invalid format");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.campsite.reactive;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.function.server.RouterFunction;
+import org.springframework.web.reactive.function.server.ServerResponse;
+
+import static org.springframework.web.reactive.function.server.RequestPredicates.DELETE;
+import static org.springframework.web.reactive.function.server.RequestPredicates.GET;
+import static org.springframework.web.reactive.function.server.RequestPredicates.PATCH;
+import static org.springframework.web.reactive.function.server.RequestPredicates.POST;
+import static org.springframework.web.reactive.function.server.RequestPredicates.accept;
+import static org.springframework.web.reactive.function.server.RequestPredicates.contentType;
+import static org.springframework.web.reactive.function.server.RequestPredicates.queryParam;
+import static org.springframework.web.reactive.function.server.RouterFunctions.route;
+
+/**
+ * Routes of the reactive mode (spring.main.web-application-type=reactive), the same as CampsiteController
+ */
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveRoutes {
+
+    @Bean
+    public RouterFunction<ServerResponse> campsiteRoutes(CampsiteHandler handler) {
+        return route(GET("/campsite/availability").and(accept(CampsiteHandler.AVAILABILITY)), handler::getAvailability)
+                .andRoute(GET("/campsite/availability/ranges").and(accept(CampsiteHandler.MULTI_AVAILABILITY)), handler::getAvailabilities)
+                .andRoute(POST("/campsite/reservation").and(contentType(CampsiteHandler.RESERVATION_REQUEST))
+                        .and(accept(CampsiteHandler.RESERVATION_RESPONSE)), handler::makeReservation)
+                .andRoute(POST("/campsite/reservation/batch").and(contentType(CampsiteHandler.BATCH_REQUEST))
+                        .and(accept(CampsiteHandler.BATCH_RESPONSE)), handler::makeReservations)
+                .andRoute(PATCH("/campsite/reservation/{id}").and(contentType(CampsiteHandler.RESERVATION_PATCH))
+                        .and(accept(CampsiteHandler.RESERVATION_RESPONSE)), handler::updateReservation)
+                //PATCH sent as POST with _method, as the servlet mode accepts it
+                .andRoute(POST("/campsite/reservation/{id}").and(queryParam("_method", "PATCH"::equalsIgnoreCase))
+                        .and(contentType(CampsiteHandler.RESERVATION_PATCH)), handler::updateReservation)
+                .andRoute(GET("/campsite/reservation/{id}").and(accept(CampsiteHandler.RESERVATION_RESPONSE)), handler::getReservation)
+                .andRoute(DELETE("/campsite/reservation/{id}"), handler::deleteReservation);
+    }
+}
@@ -0,0 +1,55 @@
+package com.campsite.reservation;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Day of the campsite calendar
+ * It has no data, its row is locked to serialize the writes on the night across all the nodes
+ */
+@Entity
+@Table(name = "calendar_days")
+public class CalendarDay implements Serializable {
+
+    @Id
+    private LocalDate day;
+
+    public CalendarDay() {
+    }
+
+    public CalendarDay(LocalDate day) {
+        this.day = day;
+    }
+
+    public LocalDate getDay() {
+        return day;
+    }
+
+    public void setDay(LocalDate day) {
+        this.day = day;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CalendarDay that = (CalendarDay) o;
+        return Objects.equals(day, that.day);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(day);
+    }
+
+    @Override
+    public String toString() {
+        return "CalendarDay{" +
+                "day=" + day +
+                '}';
+    }
+}
@@ -0,0 +1,24 @@
+package com.campsite.reservation;
+
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import javax.persistence.LockModeType;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface CalendarDayRepository extends CrudRepository<CalendarDay, LocalDate> {
+
+    /**
+     * Locks the rows of the given days until the end of the current transaction (SELECT ... FOR UPDATE)
+     * The rows are locked in ascending order so two transactions locking the same days can't deadlock
+     *
+     * @param days Days to lock
+     * @return Locked days
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    public List<CalendarDay> findByDayInOrderByDay(Collection<LocalDate> days);
+}
@@ -0,0 +1,40 @@
+package com.campsite.reservation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+
+/**
+ * Coordinates the writes with night locks in this JVM
+ * The locks are held until the transaction is committed
+ */
+@Component
+@ConditionalOnProperty(name = WriteCoordinator.MODE_PROPERTY, havingValue = "local", matchIfMissing = true)
+public class LocalWriteCoordinator implements WriteCoordinator {
+
+    @Autowired
+    private ReservationLocks reservationLocks;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public <T> T execute(long deadline, TransactionCallback<T> action, LocalDate... periods) {
+        try (ReservationLocks.Held nights = reservationLocks.lockNights(deadline, periods)) {
+            return transactionTemplate.execute(action);
+        }
+    }
+}
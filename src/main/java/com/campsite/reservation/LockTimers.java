@@ -0,0 +1,59 @@
+package com.campsite.reservation;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timers of the time spent waiting for a lock and holding it
+ *
+ * Comparing them with the repository timers shows whether writes are slowed down by the locks or by the database.
+ */
+class LockTimers {
+
+    private final Timer waitTimer;
+
+    private final Timer holdTimer;
+
+    /**
+     * @param meterRegistry Registry where the timers are created
+     * @param lock Locked resource: reservation or nights
+     * @param mode Coordination mode of the lock
+     */
+    LockTimers(MeterRegistry meterRegistry, String lock, String mode) {
+        waitTimer = Timer.builder("campsite.lock.wait")
+                .description("Time waiting to acquire a lock")
+                .tag("lock", lock)
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        holdTimer = Timer.builder("campsite.lock.hold")
+                .description("Time a lock is held")
+                .tag("lock", lock)
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * Records the wait of a lock just acquired
+     *
+     * @param waitStart System.nanoTime() when the wait started
+     * @return System.nanoTime() when the lock was acquired
+     */
+    long acquired(long waitStart) {
+        long acquiredAt = System.nanoTime();
+        waitTimer.record(acquiredAt - waitStart, TimeUnit.NANOSECONDS);
+        return acquiredAt;
+    }
+
+    /**
+     * Records the hold time of a lock just released
+     *
+     * @param acquiredAt System.nanoTime() when the lock was acquired
+     */
+    void released(long acquiredAt) {
+        holdTimer.record(System.nanoTime() - acquiredAt, TimeUnit.NANOSECONDS);
+    }
+}
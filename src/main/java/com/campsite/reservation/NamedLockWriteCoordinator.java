@@ -0,0 +1,123 @@
+package com.campsite.reservation;
+
+import com.campsite.exception.CalendarBusyException;
+import com.campsite.exception.ErrorMessages;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates the writes with MySQL named locks (GET_LOCK), one per night
+ *
+ * Named locks belong to the database session, so they are acquired with the connection of the write
+ * transaction and released after it completes. The locks of a write wait at most until its deadline, when it
+ * times out the write fails with CalendarBusyException.
+ */
+@Component
+@ConditionalOnProperty(name = WriteCoordinator.MODE_PROPERTY, havingValue = "named-lock")
+public class NamedLockWriteCoordinator implements WriteCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(NamedLockWriteCoordinator.class);
+
+    private static final String LOCK_PREFIX = "campsite-night-";
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private TransactionTemplate transactionTemplate;
+
+    private LockTimers lockTimers;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        lockTimers = new LockTimers(meterRegistry, "nights", "named-lock");
+    }
+
+    @Override
+    public <T> T execute(long deadline, TransactionCallback<T> action, LocalDate... periods) {
+        return transactionTemplate.execute(status -> {
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            List<String> acquiredLocks = new ArrayList<>();
+            long[] acquiredAt = new long[1];
+
+            //Release the locks once the transaction is committed or rolled back
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCompletion(int completionStatus) {
+                    releaseLocks(connection, acquiredLocks);
+                    if (acquiredAt[0] != 0) {
+                        lockTimers.released(acquiredAt[0]);
+                    }
+                }
+            });
+
+            //Lock in ascending order. All the locks share the timeout: each one waits at most the time left to the
+            //deadline, rounded up to whole seconds as GET_LOCK takes them, and is only tried once the deadline passed
+            long waitStart = System.nanoTime();
+            for (LocalDate night : WriteCoordinator.nightsOf(periods)) {
+                String lock = LOCK_PREFIX + night;
+                long remainingMillis = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+                long timeoutSeconds = Math.max(0, (remainingMillis + 999) / 1000);
+                if (!getLock(connection, lock, timeoutSeconds)) {
+                    throw new CalendarBusyException(ErrorMessages.CALENDAR_BUSY.getMessage());
+                }
+                acquiredLocks.add(lock);
+            }
+            acquiredAt[0] = lockTimers.acquired(waitStart);
+
+            return action.doInTransaction(status);
+        });
+    }
+
+    private boolean getLock(Connection connection, String lock, long timeoutSeconds) {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT GET_LOCK(?, ?)")) {
+            statement.setString(1, lock);
+            statement.setLong(2, timeoutSeconds);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                //1 if acquired, 0 if timed out and NULL on error
+                return resultSet.next() && (resultSet.getInt(1) == 1);
+            }
+        } catch (SQLException e) {
+            throw new CalendarBusyException(ErrorMessages.CALENDAR_BUSY.getMessage());
+        }
+    }
+
+    private void releaseLocks(Connection connection, List<String> locks) {
+        for (String lock : locks) {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT RELEASE_LOCK(?)")) {
+                statement.setString(1, lock);
+                statement.executeQuery().close();
+            } catch (SQLException e) {
+                //The lock is released anyway when the session is closed
+                logger.warn("Could not release lock {}", lock, e);
+            }
+        }
+    }
+}
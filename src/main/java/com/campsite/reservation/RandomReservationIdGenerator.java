@@ -0,0 +1,20 @@
+package com.campsite.reservation;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+/**
+ * Generates random UUIDs (version 4)
+ */
+@Component
+@ConditionalOnProperty(name = ReservationIdGenerator.GENERATOR_PROPERTY, havingValue = "random")
+public class RandomReservationIdGenerator implements ReservationIdGenerator {
+
+    @Override
+    public String next() {
+        UUID uuid = UUID.randomUUID();
+        return ReservationIds.toString(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+    }
+}
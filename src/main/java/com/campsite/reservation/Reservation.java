@@ -1,8 +1,12 @@
 package com.campsite.reservation;
 
+import org.hibernate.annotations.Type;
+
+import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.Table;
+import javax.persistence.Version;
 import java.io.Serializable;
 import java.time.LocalDate;
 import java.util.Objects;
@@ -11,7 +15,10 @@ import java.util.Objects;
 @Table(name = "reservations")
 public class Reservation implements Serializable {
 
+    //Stored as BINARY(16), see ReservationIds
     @Id
+    @Column(length = 16)
+    @Type(type = ReservationIdType.NAME)
     private String id;
 
     private String guestName;
@@ -22,6 +29,10 @@ public class Reservation implements Serializable {
 
     private LocalDate departureDate;
 
+    //Incremented on every update, it is the ETag of the reservation. Null until the reservation is saved
+    @Version
+    private Long version;
+
     public String getId() {
         return id;
     }
@@ -62,6 +73,14 @@ public class Reservation implements Serializable {
         this.departureDate = departureDate;
     }
 
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
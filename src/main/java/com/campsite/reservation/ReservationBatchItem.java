@@ -0,0 +1,52 @@
+package com.campsite.reservation;
+
+/**
+ * Result of a reservation added in a batch
+ */
+public class ReservationBatchItem {
+
+    public enum Status {
+        CREATED, REJECTED, ABORTED
+    }
+
+    private final Reservation reservation;
+
+    //Null until the reservation is created or rejected
+    private Status status;
+
+    private String message;
+
+    public ReservationBatchItem(Reservation reservation) {
+        this.reservation = reservation;
+    }
+
+    public Reservation getReservation() {
+        return reservation;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    boolean isPending() {
+        return status == null;
+    }
+
+    void created() {
+        this.status = Status.CREATED;
+    }
+
+    void rejected(String message) {
+        this.status = Status.REJECTED;
+        this.message = message;
+    }
+
+    void aborted(String message) {
+        this.status = Status.ABORTED;
+        this.message = message;
+    }
+}
@@ -0,0 +1,34 @@
+package com.campsite.reservation;
+
+public class ReservationBatchItemResource {
+
+    private ReservationBatchItem.Status status;
+
+    private String message;
+
+    private ReservationResource reservation;
+
+    public ReservationBatchItem.Status getStatus() {
+        return status;
+    }
+
+    public void setStatus(ReservationBatchItem.Status status) {
+        this.status = status;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public ReservationResource getReservation() {
+        return reservation;
+    }
+
+    public void setReservation(ReservationResource reservation) {
+        this.reservation = reservation;
+    }
+}
@@ -0,0 +1,34 @@
+package com.campsite.reservation;
+
+import java.util.List;
+
+public class ReservationBatchResource {
+
+    /**
+     * ALL_OR_NOTHING: no reservation is made if any of them is rejected
+     * BEST_EFFORT: the reservations that can be made are made
+     */
+    public enum Mode {
+        ALL_OR_NOTHING, BEST_EFFORT
+    }
+
+    private Mode mode = Mode.ALL_OR_NOTHING;
+
+    private List<ReservationResource> reservations;
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public void setMode(Mode mode) {
+        this.mode = mode;
+    }
+
+    public List<ReservationResource> getReservations() {
+        return reservations;
+    }
+
+    public void setReservations(List<ReservationResource> reservations) {
+        this.reservations = reservations;
+    }
+}
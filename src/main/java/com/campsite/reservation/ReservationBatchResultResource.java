@@ -0,0 +1,19 @@
+package com.campsite.reservation;
+
+import org.springframework.hateoas.ResourceSupport;
+
+import java.util.List;
+
+public class ReservationBatchResultResource extends ResourceSupport {
+
+    //Result of each reservation, in the order they were requested
+    private List<ReservationBatchItemResource> results;
+
+    public List<ReservationBatchItemResource> getResults() {
+        return results;
+    }
+
+    public void setResults(List<ReservationBatchItemResource> results) {
+        this.results = results;
+    }
+}
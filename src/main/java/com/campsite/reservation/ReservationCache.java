@@ -0,0 +1,208 @@
+package com.campsite.reservation;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jmx.export.annotation.ManagedAttribute;
+import org.springframework.jmx.export.annotation.ManagedResource;
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Bounded read-through cache of the reservations by id
+ *
+ * The reservations made, updated or deleted by this node are written through: the entry is replaced by the saved
+ * reservation, or by a tombstone if it was deleted, so the reads of this node never see an older state. A value loaded
+ * from the database is only stored if there is no entry yet, so a slow load can't overwrite a newer write.
+ * Entries expire after a short time, so changes made by other nodes are eventually seen.
+ * The least recently used entry is evicted when the cache is full.
+ *
+ * The reservations returned are shared by all the readers and must not be modified.
+ * The statistics are exposed through JMX and as campsite.reservation.cache metrics.
+ */
+@Component
+@ManagedResource
+public class ReservationCache implements MeterBinder {
+
+    private final int maxSize;
+
+    private final long ttlMillis;
+
+    private final Map<String, Entry> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ReservationCache(@Value("${campsite.reservation.cache.max-size:10000}") int maxSize,
+                            @Value("${campsite.reservation.cache.ttl-ms:5000}") long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ReservationCache.Entry> eldest) {
+                if (size() > ReservationCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Gets a reservation, loading it if it is not cached
+     *
+     * @param id Id of the reservation, in its stored form
+     * @param loader Loads the reservation from the database
+     * @return Reservation, or empty if it does not exist or was deleted by this node
+     */
+    public Optional<Reservation> get(String id, Supplier<Optional<Reservation>> loader) {
+        return get(id, loader, true);
+    }
+
+    /**
+     * Gets a reservation, loading it if it is not cached
+     *
+     * @param id Id of the reservation, in its stored form
+     * @param loader Loads the reservation from the database
+     * @param storeLoaded If false the loaded reservation is not stored, e.g. if it was read from a replica that may
+     *                    be behind the writes of this node
+     * @return Reservation, or empty if it does not exist or was deleted by this node
+     */
+    public Optional<Reservation> get(String id, Supplier<Optional<Reservation>> loader, boolean storeLoaded) {
+        long now = System.currentTimeMillis();
+
+        synchronized (this) {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                if (now - entry.createdAt < ttlMillis) {
+                    hits.incrementAndGet();
+                    return Optional.ofNullable(entry.reservation);
+                }
+                entries.remove(id);
+                evictions.incrementAndGet();
+            }
+        }
+
+        misses.incrementAndGet();
+        Optional<Reservation> reservation = loader.get();
+
+        //The ones that don't exist are not stored, they may be made by another node
+        if (storeLoaded && reservation.isPresent()) {
+            synchronized (this) {
+                entries.putIfAbsent(id, new Entry(reservation.get(), now));
+            }
+        }
+        return reservation;
+    }
+
+    /**
+     * Gets the version of a cached reservation, without loading it
+     * A version found counts as a hit, the read that follows a miss counts itself
+     *
+     * @param id Id of the reservation, in its stored form
+     * @return Version of the reservation, or null if it is not cached or was deleted by this node
+     */
+    public Long getVersion(String id) {
+        long now = System.currentTimeMillis();
+
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(id);
+        }
+        if ((entry == null) || (entry.reservation == null) || (now - entry.createdAt >= ttlMillis)) {
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.reservation.getVersion();
+    }
+
+    /**
+     * Stores a reservation just made or updated by this node
+     *
+     * @param reservation Saved reservation
+     */
+    public synchronized void put(Reservation reservation) {
+        entries.put(reservation.getId(), new Entry(reservation, System.currentTimeMillis()));
+    }
+
+    /**
+     * Stores that a reservation was just deleted by this node
+     *
+     * @param id Id of the reservation, in its stored form
+     */
+    public synchronized void deleted(String id) {
+        entries.put(id, new Entry(null, System.currentTimeMillis()));
+    }
+
+    @ManagedAttribute(description = "Number of reads served from the cache")
+    public long getHits() {
+        return hits.get();
+    }
+
+    @ManagedAttribute(description = "Number of reads not found in the cache")
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @ManagedAttribute(description = "Ratio of the reads served from the cache")
+    public double getHitRatio() {
+        long hits = this.hits.get();
+        long total = hits + misses.get();
+        return (total == 0) ? 0 : (double) hits / total;
+    }
+
+    @ManagedAttribute(description = "Number of entries evicted")
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    @ManagedAttribute(description = "Number of entries in the cache")
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("campsite.reservation.cache.requests", hits, AtomicLong::get)
+                .description("Reservation reads served from the cache")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("campsite.reservation.cache.requests", misses, AtomicLong::get)
+                .description("Reservation reads not found in the cache")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("campsite.reservation.cache.evictions", evictions, AtomicLong::get)
+                .description("Reservation cache entries evicted")
+                .register(registry);
+        Gauge.builder("campsite.reservation.cache.size", this, ReservationCache::getSize)
+                .description("Reservation cache entries")
+                .register(registry);
+        Gauge.builder("campsite.reservation.cache.hit-ratio", this, ReservationCache::getHitRatio)
+                .description("Ratio of the reservation reads served from the cache since the start")
+                .register(registry);
+    }
+
+    private static class Entry {
+
+        //Null if the reservation was deleted
+        private final Reservation reservation;
+
+        private final long createdAt;
+
+        private Entry(Reservation reservation, long createdAt) {
+            this.reservation = reservation;
+            this.createdAt = createdAt;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.campsite.reservation;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * In-memory occupancy of the bookable nights of the campsite
+ *
+ * Reservations can start between 1 and 30 days ahead and last up to 3 nights, so every night that can
+ * be booked falls in a short window starting today. The calendar keeps, for each night of that window,
+ * the id of the reservation occupying it in a ring buffer indexed by epoch day. When the day changes
+ * the slots of the nights already passed are recycled for the new nights entering the window.
+ *
+ * Nights outside the window are not tracked: past nights can't be booked anymore and nights after the
+ * window can't be booked yet.
+ *
+ * The calendar only sees the writes made by this node. The nights claimed in the database are the source
+ * of truth, so a night found occupied here is confirmed against them before rejecting a reservation.
+ */
+@Component
+public class ReservationCalendar {
+
+    /**
+     * Number of nights tracked starting from today. It must be greater than the last bookable night (33 days ahead)
+     */
+    static final int WINDOW_DAYS = 64;
+
+    @Autowired
+    private ReservationNightRepository reservationNightRepository;
+
+    //Id of the reservation occupying each night, indexed by epoch day modulo WINDOW_DAYS
+    private final String[] owners = new String[WINDOW_DAYS];
+
+    //Epoch day of the first night of the window (today)
+    private long firstDay;
+
+    /**
+     * Loads the occupancy of the window from the nights claimed in the database
+     * It is a range scan of the primary key of reservation_nights, the reservations themselves are not read
+     */
+    @PostConstruct
+    public synchronized void load() {
+        Arrays.fill(owners, null);
+        firstDay = LocalDate.now().toEpochDay();
+
+        LocalDate windowStart = LocalDate.ofEpochDay(firstDay);
+        LocalDate windowEnd = LocalDate.ofEpochDay(firstDay + WINDOW_DAYS);
+        sync(windowStart, windowEnd, reservationNightRepository.findByNightGreaterThanEqualAndNightLessThan(windowStart, windowEnd));
+    }
+
+    /**
+     * Checks if all the nights of a period are free or already occupied by the given reservation
+     *
+     * @param arrivalDate Period start
+     * @param departureDate Period end (the night before it is the last one checked)
+     * @param reservationId Id of the reservation allowed to occupy the period. Can be null
+     * @return true if no other reservation occupies a night of the period
+     */
+    public synchronized boolean isAvailable(LocalDate arrivalDate, LocalDate departureDate, String reservationId) {
+        roll();
+        long end = Math.min(departureDate.toEpochDay(), firstDay + WINDOW_DAYS);
+        for (long day = Math.max(arrivalDate.toEpochDay(), firstDay); day < end; day++) {
+            String owner = owners[slot(day)];
+            if ((owner != null) && !owner.equals(reservationId)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Frees the nights of a period occupied by a reservation
+     *
+     * @param reservationId Id of the reservation
+     * @param arrivalDate Period start
+     * @param departureDate Period end
+     */
+    public synchronized void release(String reservationId, LocalDate arrivalDate, LocalDate departureDate) {
+        roll();
+        long end = Math.min(departureDate.toEpochDay(), firstDay + WINDOW_DAYS);
+        for (long day = Math.max(arrivalDate.toEpochDay(), firstDay); day < end; day++) {
+            if (reservationId.equals(owners[slot(day)])) {
+                owners[slot(day)] = null;
+            }
+        }
+    }
+
+    /**
+     * Occupies all the nights of a period for a reservation
+     *
+     * @param reservationId Id of the reservation
+     * @param arrivalDate Period start
+     * @param departureDate Period end
+     */
+    public synchronized void occupy(String reservationId, LocalDate arrivalDate, LocalDate departureDate) {
+        roll();
+        long end = Math.min(departureDate.toEpochDay(), firstDay + WINDOW_DAYS);
+        for (long day = Math.max(arrivalDate.toEpochDay(), firstDay); day < end; day++) {
+            owners[slot(day)] = reservationId;
+        }
+    }
+
+    /**
+     * Replaces the occupancy of a period with the nights claimed in the database
+     *
+     * @param arrivalDate Period start
+     * @param departureDate Period end
+     * @param claims Nights claimed in the period
+     */
+    public synchronized void sync(LocalDate arrivalDate, LocalDate departureDate, List<ReservationNight> claims) {
+        roll();
+        long end = Math.min(departureDate.toEpochDay(), firstDay + WINDOW_DAYS);
+        for (long day = Math.max(arrivalDate.toEpochDay(), firstDay); day < end; day++) {
+            owners[slot(day)] = null;
+        }
+        for (ReservationNight claim : claims) {
+            long day = claim.getNight().toEpochDay();
+            if ((day >= firstDay) && (day < firstDay + WINDOW_DAYS)) {
+                owners[slot(day)] = claim.getReservationId();
+            }
+        }
+    }
+
+    /**
+     * Moves the window start to today, freeing the slots of the nights already passed
+     */
+    private void roll() {
+        long today = LocalDate.now().toEpochDay();
+        if (today > firstDay) {
+            long end = Math.min(today, firstDay + WINDOW_DAYS);
+            for (long day = firstDay; day < end; day++) {
+                owners[slot(day)] = null;
+            }
+            firstDay = today;
+        }
+    }
+
+    private static int slot(long epochDay) {
+        return (int) Math.floorMod(epochDay, (long) WINDOW_DAYS);
+    }
+}
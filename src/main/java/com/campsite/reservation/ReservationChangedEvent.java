@@ -0,0 +1,87 @@
+package com.campsite.reservation;
+
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Event published after a reservation is created, updated or deleted and the change is committed
+ */
+public class ReservationChangedEvent {
+
+    private final String reservationId;
+
+    //Dates before the change. Null if the reservation was created
+    private final LocalDate previousArrivalDate;
+
+    private final LocalDate previousDepartureDate;
+
+    //Dates after the change. Null if the reservation was deleted
+    private final LocalDate arrivalDate;
+
+    private final LocalDate departureDate;
+
+    public ReservationChangedEvent(String reservationId, LocalDate previousArrivalDate, LocalDate previousDepartureDate,
+                                   LocalDate arrivalDate, LocalDate departureDate) {
+        this.reservationId = reservationId;
+        this.previousArrivalDate = previousArrivalDate;
+        this.previousDepartureDate = previousDepartureDate;
+        this.arrivalDate = arrivalDate;
+        this.departureDate = departureDate;
+    }
+
+    public String getReservationId() {
+        return reservationId;
+    }
+
+    public LocalDate getPreviousArrivalDate() {
+        return previousArrivalDate;
+    }
+
+    public LocalDate getPreviousDepartureDate() {
+        return previousDepartureDate;
+    }
+
+    public LocalDate getArrivalDate() {
+        return arrivalDate;
+    }
+
+    public LocalDate getDepartureDate() {
+        return departureDate;
+    }
+
+    /**
+     * @return true if the nights occupied by the reservation changed
+     */
+    public boolean changesAvailability() {
+        return !(Objects.equals(previousArrivalDate, arrivalDate) && Objects.equals(previousDepartureDate, departureDate));
+    }
+
+    /**
+     * Checks if the nights freed or occupied by the change overlap with a date range
+     *
+     * @param from Range start
+     * @param to Range end
+     * @return true if the availability of the range changed
+     */
+    public boolean changesAvailability(LocalDate from, LocalDate to) {
+        if (!changesAvailability()) {
+            return false;
+        }
+        return overlaps(previousArrivalDate, previousDepartureDate, from, to) || overlaps(arrivalDate, departureDate, from, to);
+    }
+
+    private static boolean overlaps(LocalDate arrivalDate, LocalDate departureDate, LocalDate from, LocalDate to) {
+        return (arrivalDate != null) && arrivalDate.isBefore(to) && departureDate.isAfter(from);
+    }
+
+    @Override
+    public String toString() {
+        return "ReservationChangedEvent{" +
+                "reservationId='" + reservationId + '\'' +
+                ", previousArrivalDate=" + previousArrivalDate +
+                ", previousDepartureDate=" + previousDepartureDate +
+                ", arrivalDate=" + arrivalDate +
+                ", departureDate=" + departureDate +
+                '}';
+    }
+}
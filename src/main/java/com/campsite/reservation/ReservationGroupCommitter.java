@@ -0,0 +1,126 @@
+package com.campsite.reservation;
+
+import com.campsite.exception.ErrorMessages;
+import com.campsite.exception.OverloadedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Queue of new reservations written in groups by a single thread
+ * The writer takes the first reservation queued and waits at most maxDelayMs for more, up to maxGroupSize. The group
+ * is written at once by the flush action, which must set the result of every item, and then the future of each
+ * reservation completes with its item. If the flush fails nothing may have been committed, so the futures of all the
+ * items not rejected fail with its exception.
+ */
+class ReservationGroupCommitter {
+
+    private final Consumer<List<ReservationBatchItem>> flush;
+
+    private final int maxGroupSize;
+
+    private final long maxDelayNanos;
+
+    private final BlockingQueue<Queued> queue;
+
+    private final Thread writer;
+
+    private volatile boolean running = true;
+
+    ReservationGroupCommitter(Consumer<List<ReservationBatchItem>> flush, int maxGroupSize, long maxDelayMs, int queueSize) {
+        this.flush = flush;
+        this.maxGroupSize = maxGroupSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+        this.queue = new ArrayBlockingQueue<>(queueSize);
+        this.writer = new Thread(this::run, "reservation-group-commit");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues a reservation to be written in the next group
+     * @param entity Reservation to add, already validated and with its id
+     * @return Result of the reservation, completed when its group is written
+     * @throws OverloadedException if the queue is full
+     */
+    CompletableFuture<ReservationBatchItem> submit(Reservation entity) {
+        Queued queued = new Queued(new ReservationBatchItem(entity));
+        if (!running || !queue.offer(queued)) {
+            throw new OverloadedException(ErrorMessages.WRITES_OVERLOADED.getMessage());
+        }
+        return queued.result;
+    }
+
+    void shutdown() {
+        running = false;
+        writer.interrupt();
+    }
+
+    private void run() {
+        List<Queued> group = new ArrayList<>(maxGroupSize);
+        while (running) {
+            try {
+                group.add(queue.take());
+                //Wait a little for more reservations, the ones queued while the last group was written are taken at once
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (group.size() < maxGroupSize) {
+                    Queued next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!group.isEmpty()) {
+                write(group);
+                group.clear();
+            }
+        }
+
+        //Fail what is left in the queue so no caller waits forever
+        Queued queued;
+        while ((queued = queue.poll()) != null) {
+            queued.result.completeExceptionally(new OverloadedException(ErrorMessages.WRITES_OVERLOADED.getMessage()));
+        }
+    }
+
+    private void write(List<Queued> group) {
+        List<ReservationBatchItem> items = new ArrayList<>(group.size());
+        for (Queued queued : group) {
+            items.add(queued.item);
+        }
+        try {
+            flush.accept(items);
+            for (Queued queued : group) {
+                queued.result.complete(queued.item);
+            }
+        } catch (RuntimeException | Error e) {
+            for (Queued queued : group) {
+                if (queued.item.getStatus() == ReservationBatchItem.Status.REJECTED) {
+                    queued.result.complete(queued.item);
+                } else {
+                    queued.result.completeExceptionally(e);
+                }
+            }
+        }
+    }
+
+    private static class Queued {
+
+        private final ReservationBatchItem item;
+
+        private final CompletableFuture<ReservationBatchItem> result = new CompletableFuture<>();
+
+        private Queued(ReservationBatchItem item) {
+            this.item = item;
+        }
+    }
+}
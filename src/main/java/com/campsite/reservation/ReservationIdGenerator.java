@@ -0,0 +1,18 @@
+package com.campsite.reservation;
+
+/**
+ * Generates the ids of the new reservations
+ *
+ * The implementation is selected with the property campsite.reservation.id.generator:
+ *  - time-ordered (default): 48-bit timestamp, sequence and node id, so new rows are appended to the primary key index
+ *  - random: random UUIDs, as the ids were generated before
+ */
+public interface ReservationIdGenerator {
+
+    String GENERATOR_PROPERTY = "campsite.reservation.id.generator";
+
+    /**
+     * @return Id for a new reservation, as shown to the clients
+     */
+    String next();
+}
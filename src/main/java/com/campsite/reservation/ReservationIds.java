@@ -0,0 +1,167 @@
+package com.campsite.reservation;
+
+import com.campsite.exception.ErrorMessages;
+import com.campsite.exception.ReservationNotFoundException;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Conversions of the reservation ids
+ *
+ * Ids are 128-bit values stored as BINARY(16). They are shown as a 22 character base62 string, except the random
+ * (version 4) UUIDs of the reservations made before the ids were time-ordered, which keep their usual UUID form so
+ * the ids already given to the guests are still valid.
+ *
+ * The base62 digits are in ASCII order and the strings have a fixed length, so they sort like the values.
+ */
+public final class ReservationIds {
+
+    static final int BASE62_LENGTH = 22;
+
+    private static final int UUID_LENGTH = 36;
+
+    private static final char[] DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz".toCharArray();
+
+    private static final int[] VALUES = new int[128];
+
+    static {
+        Arrays.fill(VALUES, -1);
+        for (int i = 0; i < DIGITS.length; i++) {
+            VALUES[DIGITS[i]] = i;
+        }
+    }
+
+    private ReservationIds() {
+    }
+
+    /**
+     * Validates an id received from a client
+     *
+     * @param id Id as shown to the clients
+     * @return Id in its canonical form
+     * @throws ReservationNotFoundException if it is not a valid id, as no reservation can have it
+     */
+    public static String parse(String id) {
+        long[] value = decode(id);
+        if (value == null) {
+            throw new ReservationNotFoundException(ErrorMessages.RESERVATION_NOT_FOUND.getMessage());
+        }
+        return toString(value[0], value[1]);
+    }
+
+    /**
+     * @param id Id as shown to the clients
+     * @return The 16 bytes stored in the database
+     * @throws IllegalArgumentException if it is not a valid id
+     */
+    public static byte[] toBytes(String id) {
+        long[] value = decode(id);
+        if (value == null) {
+            throw new IllegalArgumentException("Invalid reservation id: " + id);
+        }
+        return ByteBuffer.allocate(16).putLong(value[0]).putLong(value[1]).array();
+    }
+
+    /**
+     * @param bytes The 16 bytes stored in the database
+     * @return Id as shown to the clients
+     */
+    public static String fromBytes(byte[] bytes) {
+        if (bytes.length != 16) {
+            throw new IllegalArgumentException("Invalid reservation id length: " + bytes.length);
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        return toString(buffer.getLong(), buffer.getLong());
+    }
+
+    /**
+     * @param mostSignificantBits First 64 bits of the id
+     * @param leastSignificantBits Last 64 bits of the id
+     * @return Id as shown to the clients
+     */
+    public static String toString(long mostSignificantBits, long leastSignificantBits) {
+        if (isRandomUuid(mostSignificantBits)) {
+            return new UUID(mostSignificantBits, leastSignificantBits).toString();
+        }
+
+        //Divide the value by 62 repeatedly, using 32-bit limbs so the partial remainders fit in a long
+        int[] limbs = { (int) (mostSignificantBits >>> 32), (int) mostSignificantBits,
+                (int) (leastSignificantBits >>> 32), (int) leastSignificantBits };
+        char[] chars = new char[BASE62_LENGTH];
+        for (int i = BASE62_LENGTH - 1; i >= 0; i--) {
+            long remainder = 0;
+            for (int j = 0; j < limbs.length; j++) {
+                long dividend = (remainder << 32) | (limbs[j] & 0xFFFFFFFFL);
+                limbs[j] = (int) (dividend / 62);
+                remainder = dividend % 62;
+            }
+            chars[i] = DIGITS[(int) remainder];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * @return The two halves of the id, or null if it is not valid or not in its canonical form
+     */
+    private static long[] decode(String id) {
+        if (id == null) {
+            return null;
+        }
+        if (id.length() == UUID_LENGTH) {
+            return decodeUuid(id);
+        }
+        if (id.length() == BASE62_LENGTH) {
+            return decodeBase62(id);
+        }
+        return null;
+    }
+
+    private static long[] decodeUuid(String id) {
+        UUID uuid;
+        try {
+            uuid = UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        //Only the random UUIDs are shown in this form, and UUID.fromString accepts groups with fewer digits
+        if (!isRandomUuid(uuid.getMostSignificantBits()) || !uuid.toString().equalsIgnoreCase(id)) {
+            return null;
+        }
+        return new long[] { uuid.getMostSignificantBits(), uuid.getLeastSignificantBits() };
+    }
+
+    private static long[] decodeBase62(String id) {
+        //Multiply and add digit by digit, using 32-bit limbs so the partial products fit in a long
+        long[] limbs = new long[4];
+        for (int i = 0; i < id.length(); i++) {
+            char c = id.charAt(i);
+            int digit = (c < VALUES.length) ? VALUES[c] : -1;
+            if (digit < 0) {
+                return null;
+            }
+            long carry = digit;
+            for (int j = limbs.length - 1; j >= 0; j--) {
+                long product = limbs[j] * 62 + carry;
+                limbs[j] = product & 0xFFFFFFFFL;
+                carry = product >>> 32;
+            }
+            if (carry != 0) {
+                return null; //Larger than 128 bits
+            }
+        }
+
+        long mostSignificantBits = (limbs[0] << 32) | limbs[1];
+        long leastSignificantBits = (limbs[2] << 32) | limbs[3];
+        //Random UUIDs are shown in their usual form, so this one is not canonical
+        if (isRandomUuid(mostSignificantBits)) {
+            return null;
+        }
+        return new long[] { mostSignificantBits, leastSignificantBits };
+    }
+
+    private static boolean isRandomUuid(long mostSignificantBits) {
+        return ((mostSignificantBits >>> 12) & 0xF) == 4;
+    }
+}
@@ -0,0 +1,117 @@
+package com.campsite.reservation;
+
+import com.campsite.exception.ErrorMessages;
+import com.campsite.exception.NotAvailableException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Component;
+
+import java.sql.Date;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes reservations with JDBC batches, one statement per table whatever the number of reservations, and updates
+ * them with conditional statements whose row count tells if the reservation was there
+ */
+@Component
+public class ReservationJdbcWriter {
+
+    private static final String INSERT_NIGHT = "INSERT INTO reservation_nights (night, reservation_id) VALUES (?, ?)";
+
+    private static final String INSERT_RESERVATION =
+            "INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date, version) VALUES (?, ?, ?, ?, ?, 0)";
+
+    private static final String UPDATE_GUEST =
+            "UPDATE reservations SET guest_name = COALESCE(?, guest_name), guest_mail = COALESCE(?, guest_mail), version = version + 1 WHERE id = ?";
+
+    private static final String UPDATE_RESERVATION =
+            "UPDATE reservations SET guest_name = ?, guest_mail = ?, arrival_date = ?, departure_date = ?, version = version + 1 WHERE id = ? AND version = ?";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    /**
+     * Inserts reservations and claims their nights. It must be called inside a transaction
+     *
+     * @param reservations Reservations to insert, with their ids set. Their version is set to the first one
+     * @throws NotAvailableException if a night is already claimed by another reservation
+     */
+    public void insert(List<Reservation> reservations) {
+        List<Object[]> nights = new ArrayList<>();
+        List<Object[]> rows = new ArrayList<>(reservations.size());
+        for (Reservation reservation : reservations) {
+            byte[] id = ReservationIds.toBytes(reservation.getId());
+            for (LocalDate night = reservation.getArrivalDate(); night.isBefore(reservation.getDepartureDate()); night = night.plusDays(1)) {
+                nights.add(new Object[] { Date.valueOf(night), id });
+            }
+            rows.add(new Object[] { id, reservation.getGuestName(), reservation.getGuestMail(),
+                    Date.valueOf(reservation.getArrivalDate()), Date.valueOf(reservation.getDepartureDate()) });
+            reservation.setVersion(0L);
+        }
+
+        claim(nights);
+        jdbcTemplate.batchUpdate(INSERT_RESERVATION, rows);
+    }
+
+    /**
+     * Claims the nights of a period for a reservation in a single batch. It must be called inside a transaction
+     *
+     * @param reservationId Id of the reservation
+     * @param arrivalDate Period start
+     * @param departureDate Period end
+     * @throws NotAvailableException if a night is already claimed by another reservation
+     */
+    public void claimNights(String reservationId, LocalDate arrivalDate, LocalDate departureDate) {
+        byte[] id = ReservationIds.toBytes(reservationId);
+        List<Object[]> nights = new ArrayList<>();
+        for (LocalDate night = arrivalDate; night.isBefore(departureDate); night = night.plusDays(1)) {
+            nights.add(new Object[] { Date.valueOf(night), id });
+        }
+        claim(nights);
+    }
+
+    /**
+     * Updates the guest of a reservation in place, keeping the fields not given
+     *
+     * @param reservationId Id of the reservation
+     * @param guestName New guest name, or null to keep it
+     * @param guestMail New guest mail, or null to keep it
+     * @return Number of reservations updated, 0 if it does not exist
+     */
+    public int updateGuest(String reservationId, String guestName, String guestMail) {
+        return jdbcTemplate.update(UPDATE_GUEST,
+                new SqlParameterValue(Types.VARCHAR, guestName),
+                new SqlParameterValue(Types.VARCHAR, guestMail),
+                ReservationIds.toBytes(reservationId));
+    }
+
+    /**
+     * Updates a reservation if it was not changed since it was read, incrementing its version
+     *
+     * @param reservation Reservation with all its fields
+     * @param version Version of the reservation when it was read
+     * @return Number of reservations updated, 0 if it was changed or deleted meanwhile
+     */
+    public int update(Reservation reservation, long version) {
+        return jdbcTemplate.update(UPDATE_RESERVATION,
+                reservation.getGuestName(),
+                reservation.getGuestMail(),
+                Date.valueOf(reservation.getArrivalDate()),
+                Date.valueOf(reservation.getDepartureDate()),
+                ReservationIds.toBytes(reservation.getId()),
+                version);
+    }
+
+    private void claim(List<Object[]> nights) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_NIGHT, nights);
+        } catch (DataIntegrityViolationException e) {
+            throw new NotAvailableException(ErrorMessages.NOT_AVAILABLE.getMessage(), e);
+        }
+    }
+}
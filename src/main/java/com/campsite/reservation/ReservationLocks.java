@@ -0,0 +1,143 @@
+package com.campsite.reservation;
+
+import com.campsite.exception.CalendarBusyException;
+import com.campsite.exception.ErrorMessages;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped locks used to serialize the writes on the same reservation or on the same nights
+ *
+ * Night locks are striped by epoch day so reservations of unrelated nights don't wait for each other.
+ * Reservation locks are striped by id and protect the read-modify-write of an existing reservation.
+ *
+ * To avoid deadlocks the locks are always acquired in the same order: first the reservation lock
+ * (if any) and then the night locks, in ascending stripe order. The locks of a write share its deadline.
+ *
+ * The time spent waiting for the locks and holding them is recorded in the campsite.lock timers.
+ */
+@Component
+public class ReservationLocks {
+
+    /**
+     * Number of night stripes. Same as the calendar window so two bookable nights never share a lock
+     */
+    static final int NIGHT_STRIPES = ReservationCalendar.WINDOW_DAYS;
+
+    static final int RESERVATION_STRIPES = 64;
+
+    private final ReentrantLock[] nightLocks = new ReentrantLock[NIGHT_STRIPES];
+
+    private final ReentrantLock[] reservationLocks = new ReentrantLock[RESERVATION_STRIPES];
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private LockTimers reservationTimers;
+
+    private LockTimers nightTimers;
+
+    public ReservationLocks() {
+        for (int i = 0; i < NIGHT_STRIPES; i++) {
+            nightLocks[i] = new ReentrantLock();
+        }
+        for (int i = 0; i < RESERVATION_STRIPES; i++) {
+            reservationLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        reservationTimers = new LockTimers(meterRegistry, "reservation", "local");
+        nightTimers = new LockTimers(meterRegistry, "nights", "local");
+    }
+
+    /**
+     * Locks an existing reservation
+     *
+     * @param deadline System.nanoTime() until which to wait for the lock
+     * @param reservationId Id of the reservation
+     * @return Handle that releases the lock when closed
+     * @throws CalendarBusyException if the lock can't be acquired in time
+     */
+    public Held lockReservation(long deadline, String reservationId) {
+        ReentrantLock lock = reservationLocks[Math.floorMod(reservationId.hashCode(), RESERVATION_STRIPES)];
+        long waitStart = System.nanoTime();
+        try {
+            if (!lock.tryLock(deadline - waitStart, TimeUnit.NANOSECONDS)) {
+                throw new CalendarBusyException(ErrorMessages.CALENDAR_BUSY.getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CalendarBusyException(ErrorMessages.CALENDAR_BUSY.getMessage());
+        }
+        long acquiredAt = reservationTimers.acquired(waitStart);
+        return () -> {
+            lock.unlock();
+            reservationTimers.released(acquiredAt);
+        };
+    }
+
+    /**
+     * Locks all the nights of one or more periods
+     *
+     * @param deadline System.nanoTime() until which to wait for the locks
+     * @param periods Pairs of arrival and departure dates
+     * @return Handle that releases the locks when closed
+     * @throws CalendarBusyException if the locks can't be acquired in time
+     */
+    public Held lockNights(long deadline, LocalDate... periods) {
+        BitSet stripes = new BitSet(NIGHT_STRIPES);
+        for (LocalDate night : WriteCoordinator.nightsOf(periods)) {
+            stripes.set((int) Math.floorMod(night.toEpochDay(), (long) NIGHT_STRIPES));
+        }
+
+        //Lock in ascending order. If a lock is not acquired in time, release the ones already held
+        long waitStart = System.nanoTime();
+        BitSet held = new BitSet(NIGHT_STRIPES);
+        try {
+            for (int i = stripes.nextSetBit(0); i >= 0; i = stripes.nextSetBit(i + 1)) {
+                if (!nightLocks[i].tryLock(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+                    throw new CalendarBusyException(ErrorMessages.CALENDAR_BUSY.getMessage());
+                }
+                held.set(i);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unlock(held);
+            throw new CalendarBusyException(ErrorMessages.CALENDAR_BUSY.getMessage());
+        } catch (RuntimeException e) {
+            unlock(held);
+            throw e;
+        }
+
+        long acquiredAt = nightTimers.acquired(waitStart);
+        return () -> {
+            unlock(held);
+            nightTimers.released(acquiredAt);
+        };
+    }
+
+    private void unlock(BitSet stripes) {
+        for (int i = stripes.nextSetBit(0); i >= 0; i = stripes.nextSetBit(i + 1)) {
+            nightLocks[i].unlock();
+        }
+    }
+
+    /**
+     * Locks held by a thread, released when closed
+     */
+    @FunctionalInterface
+    public interface Held extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
@@ -0,0 +1,67 @@
+package com.campsite.reservation;
+
+import org.hibernate.annotations.Type;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.Objects;
+
+/**
+ * Night of the campsite claimed by a reservation
+ *
+ * There is one row per occupied night and the night is the primary key, so the database rejects
+ * two reservations claiming the same night regardless of the node that writes them.
+ */
+@Entity
+@Table(name = "reservation_nights")
+public class ReservationNight implements Serializable {
+
+    @Id
+    private LocalDate night;
+
+    @Column(length = 16)
+    @Type(type = ReservationIdType.NAME)
+    private String reservationId;
+
+    public LocalDate getNight() {
+        return night;
+    }
+
+    public void setNight(LocalDate night) {
+        this.night = night;
+    }
+
+    public String getReservationId() {
+        return reservationId;
+    }
+
+    public void setReservationId(String reservationId) {
+        this.reservationId = reservationId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ReservationNight that = (ReservationNight) o;
+        return Objects.equals(night, that.night) &&
+                Objects.equals(reservationId, that.reservationId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(night, reservationId);
+    }
+
+    @Override
+    public String toString() {
+        return "ReservationNight{" +
+                "night=" + night +
+                ", reservationId='" + reservationId + '\'' +
+                '}';
+    }
+}
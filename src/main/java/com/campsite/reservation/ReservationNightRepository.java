@@ -0,0 +1,53 @@
+package com.campsite.reservation;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ReservationNightRepository extends CrudRepository<ReservationNight, LocalDate> {
+
+    /**
+     * Releases all the nights claimed by a reservation. It must be executed inside a transaction
+     *
+     * @param reservationId Id of the reservation
+     * @return Number of released nights
+     */
+    @Modifying
+    @Query("delete from ReservationNight n where n.reservationId = ?1")
+    public int releaseAll(String reservationId);
+
+    /**
+     * Finds the claimed nights in a date range
+     *
+     * @param from Range start (inclusive)
+     * @param to Range end (exclusive)
+     * @return Nights claimed in the range
+     */
+    public List<ReservationNight> findByNightGreaterThanEqualAndNightLessThan(LocalDate from, LocalDate to);
+
+    /**
+     * Checks if another reservation claimed a night in a date range
+     * The query stops at the first claimed night found
+     *
+     * @param from Range start (inclusive)
+     * @param to Range end (exclusive)
+     * @param reservationId Id of the reservation whose nights are ignored
+     * @return true if a night of the range is claimed by another reservation
+     */
+    public boolean existsByNightGreaterThanEqualAndNightLessThanAndReservationIdNot(LocalDate from, LocalDate to, String reservationId);
+
+    /**
+     * Checks if any reservation claimed a night in a date range
+     * The query stops at the first claimed night found
+     *
+     * @param from Range start (inclusive)
+     * @param to Range end (exclusive)
+     * @return true if a night of the range is claimed
+     */
+    public boolean existsByNightGreaterThanEqualAndNightLessThan(LocalDate from, LocalDate to);
+}
@@ -0,0 +1,14 @@
+package com.campsite.reservation;
+
+import java.time.LocalDate;
+
+/**
+ * Projection with only the dates of a reservation
+ * Queries returning it read just the two date columns, which the arrival_departure index covers
+ */
+public interface ReservationPeriod {
+
+    LocalDate getArrivalDate();
+
+    LocalDate getDepartureDate();
+}
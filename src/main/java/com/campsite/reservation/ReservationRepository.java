@@ -1,24 +1,40 @@
 package com.campsite.reservation;
 
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
-import java.time.LocalDate;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ReservationRepository extends CrudRepository<Reservation, String> {
 
     /**
-     * Finds all reservations that overlap with a specific date range
+     * Finds the dates of all reservations ordered by arrival date
+     * Only the dates are read, so the query is answered from the arrival_departure index
      *
-     * Given two date ranges: A and B there is an overlapping if:
-     *      - StartA < EndB and EndA > StartB
-     * This method, given a range A, find all the reservations that match this condition
+     * @return Periods of all the reservations
+     */
+    public List<ReservationPeriod> findPeriodsByOrderByArrivalDate();
+
+    /**
+     * Finds the dates of a reservation
+     *
+     * @param id Id of the reservation
+     * @return Period of the reservation, or empty if it does not exist
+     */
+    public Optional<ReservationPeriod> findPeriodById(String id);
+
+    /**
+     * Deletes a reservation without loading it first
      *
-     * @param arrivalDate Date range start
-     * @param departureDate Date range end
-     * @return List of reservations that overlap with the given period
+     * @param id Id of the reservation
+     * @return Number of deleted reservations
      */
-    public List<Reservation> findByDepartureDateGreaterThanAndArrivalDateLessThanOrderByArrivalDate(LocalDate arrivalDate, LocalDate departureDate);
+    @Modifying
+    @Query("delete from Reservation r where r.id = :id")
+    public int deleteReservation(@Param("id") String id);
 }
@@ -1,16 +1,20 @@
 package com.campsite.reservation;
 
 import com.campsite.CampsiteController;
-import org.springframework.hateoas.Link;
+import com.campsite.CampsiteLinks;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.hateoas.mvc.ResourceAssemblerSupport;
 import org.springframework.stereotype.Component;
 
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.methodOn;
+import java.util.ArrayList;
+import java.util.List;
 
 @Component
 public class ReservationResourceAssembler extends ResourceAssemblerSupport<Reservation, ReservationResource> {
 
+    @Autowired
+    private CampsiteLinks campsiteLinks;
+
     public ReservationResourceAssembler() {
         super(CampsiteController.class, ReservationResource.class);
     }
@@ -25,8 +29,7 @@ public class ReservationResourceAssembler extends ResourceAssemblerSupport<Reser
         resource.setGuestMail(entity.getGuestMail());
         resource.setGuestName(entity.getGuestName());
 
-        Link link = linkTo(methodOn(CampsiteController.class).getReservation(entity.getId())).withSelfRel();
-        resource.add(link);
+        resource.add(campsiteLinks.reservation(entity.getId()));
 
         return resource;
     }
@@ -41,4 +44,23 @@ public class ReservationResourceAssembler extends ResourceAssemblerSupport<Reser
 
         return entity;
     }
+
+    public ReservationBatchResultResource toBatchResource(List<ReservationBatchItem> items) {
+
+        List<ReservationBatchItemResource> results = new ArrayList<>(items.size());
+        for (ReservationBatchItem item : items) {
+            ReservationBatchItemResource result = new ReservationBatchItemResource();
+            result.setStatus(item.getStatus());
+            result.setMessage(item.getMessage());
+            if (item.getStatus() == ReservationBatchItem.Status.CREATED) {
+                result.setReservation(toResource(item.getReservation()));
+            }
+            results.add(result);
+        }
+
+        ReservationBatchResultResource resource = new ReservationBatchResultResource();
+        resource.setResults(results);
+
+        return resource;
+    }
 }
@@ -1,13 +1,28 @@
 package com.campsite.reservation;
 
+import com.campsite.datasource.DataSourceRoute;
+import com.campsite.datasource.ReplicaRead;
 import com.campsite.exception.*;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
-import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 import static java.time.temporal.ChronoUnit.DAYS;
 
@@ -17,48 +32,338 @@ public class ReservationService {
     @Autowired
     private ReservationRepository reservationRepository;
 
+    @Autowired
+    private ReservationNightRepository reservationNightRepository;
+
+    @Autowired
+    private ReservationCalendar reservationCalendar;
+
+    @Autowired
+    private ReservationCache reservationCache;
+
+    @Autowired
+    private ReservationLocks reservationLocks;
+
+    @Autowired
+    private WriteCoordinator writeCoordinator;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private ReservationJdbcWriter reservationJdbcWriter;
+
+    @Autowired
+    private ReservationIdGenerator reservationIdGenerator;
+
+    @Value("${campsite.reservation.batch.max-size:50}")
+    private int maxBatchSize;
+
+    @Value("${campsite.reservation.coordination.lock-timeout-ms:2000}")
+    private long lockTimeoutMillis;
+
+    @Value("${campsite.reservation.group-commit.enabled:true}")
+    private boolean groupCommitEnabled;
+
+    @Value("${campsite.reservation.group-commit.max-size:50}")
+    private int maxGroupSize;
+
+    @Value("${campsite.reservation.group-commit.max-delay-ms:2}")
+    private long maxGroupDelayMs;
+
+    @Value("${campsite.reservation.group-commit.queue-size:1000}")
+    private int groupQueueSize;
+
+    private TransactionTemplate transactionTemplate;
+
+    //Null if the reservations are added one by one
+    private ReservationGroupCommitter groupCommitter;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        if (groupCommitEnabled) {
+            groupCommitter = new ReservationGroupCommitter(this::insertGroup, maxGroupSize, maxGroupDelayMs, groupQueueSize);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (groupCommitter != null) {
+            groupCommitter.shutdown();
+        }
+    }
+
     /**
      * Adds a new Reservation
-     * It is synchronized to avoid multiple saves at the same time and allow to check for overlapping
+     * The reservation and the nights it occupies are saved in the same transaction. Each night can be claimed only once
+     * in the database, so an overlapping reservation fails even if it is made from another node.
+     * The nights are locked by the write coordinator to avoid multiple saves of overlapping reservations at the same time,
+     * and an overlapping reservation is rejected from the in-memory reservation calendar without going to the database.
+     * With group commit the reservation is queued and written with the ones queued at the same time, see addAsync
      *
      * @param entity Reservation to add
      * @return Added reservation
      * @throws InvalidReservationException if the reservation has missing fields
      * @throws NotAvailableException if the campsite is not available in the requested period
      * @throws InvalidDateException if the date period is not valid or violates the constraints
+     * @throws CalendarBusyException if the nights can't be locked in time
+     * @throws OverloadedException if too many reservations are queued
      */
-    public synchronized Reservation add(Reservation entity) {
-        //Check that all the fields are present
-        if ((entity.getArrivalDate() == null) || (entity.getDepartureDate() == null)) {
-            throw new InvalidReservationException(ErrorMessages.PROVIDE_DATES.getMessage());
+    public Reservation add(Reservation entity) {
+        validateNewReservation(entity);
+
+        entity.setId(newReservationId());
+
+        if (groupCommitter == null) {
+            return insert(entity);
         }
-        if (entity.getGuestName() == null) {
-            throw new InvalidReservationException(ErrorMessages.PROVIDE_NAME.getMessage());
+        CompletableFuture<ReservationBatchItem> result = groupCommitter.submit(entity);
+        //Waited with handle, join would wrap the failure in a CompletionException and fill its stack trace
+        Throwable failure = result.handle((item, e) -> e).join();
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            //The group writer only throws unchecked exceptions, a checked one would be a bug
+            throw new IllegalStateException(failure);
         }
-        if (entity.getGuestMail() == null) {
-            throw new InvalidReservationException(ErrorMessages.PROVIDE_MAIL.getMessage());
+        return created(result.getNow(null));
+    }
+
+    /**
+     * Adds a new Reservation without waiting for it to be written
+     * The reservation is validated at once and queued for the group commit writer, which takes the reservations queued
+     * every few milliseconds (or up to a max number) and writes them in a single transaction with JDBC batches, under
+     * one acquisition of the write coordinator for all their nights. The reservations overlapping an earlier one of the
+     * same group or a reservation in the calendar are rejected one by one, as in a best effort batch.
+     * If group commit is disabled the reservation is written before returning
+     *
+     * @param entity Reservation to add
+     * @return Added reservation, completed when its group is committed. It fails with the same exceptions as add
+     * @throws InvalidReservationException if the reservation has missing fields
+     * @throws InvalidDateException if the date period is not valid or violates the constraints
+     * @throws OverloadedException if too many reservations are queued
+     */
+    public CompletableFuture<Reservation> addAsync(Reservation entity) {
+        validateNewReservation(entity);
+
+        entity.setId(newReservationId());
+
+        if (groupCommitter == null) {
+            return CompletableFuture.completedFuture(insert(entity));
         }
+        return groupCommitter.submit(entity).thenApply(ReservationService::created);
+    }
 
-        validateReservationDates(entity.getArrivalDate(), entity.getDepartureDate());
+    /**
+     * @return The reservation of an item of a group
+     * @throws NotAvailableException if it was rejected
+     */
+    private static Reservation created(ReservationBatchItem item) {
+        if (item.getStatus() != ReservationBatchItem.Status.CREATED) {
+            throw new NotAvailableException(item.getMessage());
+        }
+        return item.getReservation();
+    }
+
+    /**
+     * Writes a new reservation on its own
+     * @param entity Reservation to add, already validated and with its id
+     * @return Added reservation
+     */
+    private Reservation insert(Reservation entity) {
+        Reservation savedEntity = executeClaiming(lockDeadline(), entity.getArrivalDate(), entity.getDepartureDate(), status -> {
+            //Check if there is an overlapping reservation
+            if (!isAvailable(entity.getId(), entity.getArrivalDate(), entity.getDepartureDate())) {
+                throw new NotAvailableException(ErrorMessages.NOT_AVAILABLE.getMessage());
+            }
+            reservationJdbcWriter.claimNights(entity.getId(), entity.getArrivalDate(), entity.getDepartureDate());
+            return reservationRepository.save(entity);
+        });
+
+        reservationCalendar.occupy(savedEntity.getId(), savedEntity.getArrivalDate(), savedEntity.getDepartureDate());
+        reservationCache.put(savedEntity);
+        eventPublisher.publishEvent(new ReservationChangedEvent(savedEntity.getId(), null, null,
+                savedEntity.getArrivalDate(), savedEntity.getDepartureDate()));
+        return savedEntity;
+    }
+
+    /**
+     * Adds several reservations at once
+     * The reservations are validated and checked against each other in memory (sorted by arrival date, an overlapping
+     * reservation is rejected in favour of the one arriving earlier). Then the nights of all of them are locked and
+     * checked against the calendar once, and the accepted ones are inserted with JDBC batches in a single transaction.
+     *
+     * @param entities Reservations to add
+     * @param allOrNothing If true, no reservation is added when any of them is rejected
+     * @return Result of each reservation, in the same order
+     * @throws InvalidReservationException if there are no reservations or more than allowed
+     * @throws CalendarBusyException if the nights can't be locked in time
+     */
+    public List<ReservationBatchItem> addAll(List<Reservation> entities, boolean allOrNothing) {
+        if ((entities == null) || entities.isEmpty()) {
+            throw new InvalidReservationException(ErrorMessages.EMPTY_BATCH.getMessage());
+        }
+        if (entities.size() > maxBatchSize) {
+            throw new InvalidReservationException(ErrorMessages.BATCH_TOO_LARGE.getMessage());
+        }
+
+        List<ReservationBatchItem> items = new ArrayList<>(entities.size());
+        for (Reservation entity : entities) {
+            ReservationBatchItem item = new ReservationBatchItem(entity);
+            try {
+                validateNewReservation(entity);
+            } catch (InvalidReservationException | InvalidDateException e) {
+                item.rejected(e.getMessage());
+            }
+            items.add(item);
+        }
+
+        //Reject the reservations overlapping another one of the batch
+        List<ReservationBatchItem> pending = items.stream()
+                .filter(ReservationBatchItem::isPending)
+                .sorted(Comparator.comparing(item -> item.getReservation().getArrivalDate()))
+                .collect(Collectors.toList());
+        LocalDate lastDepartureDate = null;
+        for (ReservationBatchItem item : pending) {
+            if ((lastDepartureDate != null) && item.getReservation().getArrivalDate().isBefore(lastDepartureDate)) {
+                item.rejected(ErrorMessages.NOT_AVAILABLE.getMessage());
+            } else {
+                lastDepartureDate = item.getReservation().getDepartureDate();
+            }
+        }
+        pending.removeIf(item -> !item.isPending());
+
+        if (pending.isEmpty() || (allOrNothing && (pending.size() < items.size()))) {
+            abortPending(items);
+            return items;
+        }
+
+        for (ReservationBatchItem item : pending) {
+            item.getReservation().setId(newReservationId());
+        }
+
+        try {
+            insertPending(lockDeadline(), pending, allOrNothing);
+        } catch (NotAvailableException e) {
+            //A night was claimed by another node. Nothing was written, reject the batch
+            for (ReservationBatchItem item : pending) {
+                if (item.isPending()) {
+                    item.rejected(e.getMessage());
+                }
+            }
+        }
+        abortPending(items);
+        return items;
+    }
+
+    /**
+     * Writes a group of reservations queued by addAsync
+     * The group is written as a best effort batch, in the order the reservations were queued: a reservation overlapping
+     * an earlier one of the group is rejected. If another node claimed any of the nights nothing was written, so the
+     * group is written again once with the calendar refreshed, rejecting only the reservations overlapping the claims
+     *
+     * @param items Reservations of the group, already validated and with their ids
+     * @throws NotAvailableException if another node claimed the nights again while retrying
+     * @throws CalendarBusyException if the nights can't be locked in time
+     */
+    private void insertGroup(List<ReservationBatchItem> items) {
+        List<ReservationBatchItem> pending = new ArrayList<>(items.size());
+        for (ReservationBatchItem item : items) {
+            Reservation entity = item.getReservation();
+            boolean overlaps = pending.stream()
+                    .map(ReservationBatchItem::getReservation)
+                    .anyMatch(other -> entity.getArrivalDate().isBefore(other.getDepartureDate()) &&
+                            other.getArrivalDate().isBefore(entity.getDepartureDate()));
+            if (overlaps) {
+                item.rejected(ErrorMessages.NOT_AVAILABLE.getMessage());
+            } else {
+                pending.add(item);
+            }
+        }
 
-        //Check if there is an overlapping reservation
-        List<Reservation> overlappingReservations = reservationRepository.findByDepartureDateGreaterThanAndArrivalDateLessThanOrderByArrivalDate(entity.getArrivalDate(), entity.getDepartureDate());
+        //The retry shares the deadline of the first write
+        long deadline = lockDeadline();
+        try {
+            insertPending(deadline, pending, false);
+        } catch (NotAvailableException e) {
+            pending.removeIf(item -> !item.isPending());
+            insertPending(deadline, pending, false);
+        }
+    }
 
-        if (overlappingReservations.size() > 0) {
-            throw new NotAvailableException(ErrorMessages.NOT_AVAILABLE.getMessage());
+    /**
+     * Checks the calendar and inserts the available reservations with JDBC batches in a single transaction, locking
+     * the nights of all of them once through the write coordinator. The reservations not available are rejected
+     *
+     * @param deadline System.nanoTime() by which the nights must be locked
+     * @param pending Reservations to add, already validated and with their ids
+     * @param allOrNothing If true, nothing is written when any of them is not available
+     * @throws NotAvailableException if a night was claimed by another node. Nothing is written and the calendar is refreshed
+     * @throws CalendarBusyException if the nights can't be locked in time
+     */
+    private void insertPending(long deadline, List<ReservationBatchItem> pending, boolean allOrNothing) {
+        if (pending.isEmpty()) {
+            return;
         }
 
-        //Set reservation ID. Use UUID for simplicity but it maybe it could be replaced with something shorter and more human readable
-        UUID uuid = UUID.randomUUID();
-        entity.setId(uuid.toString());
+        LocalDate[] periods = new LocalDate[pending.size() * 2];
+        for (int i = 0; i < pending.size(); i++) {
+            Reservation entity = pending.get(i).getReservation();
+            periods[2 * i] = entity.getArrivalDate();
+            periods[2 * i + 1] = entity.getDepartureDate();
+        }
 
-        return reservationRepository.save(entity);
+        try {
+            writeCoordinator.execute(deadline, status -> {
+                //Check the calendar and write the available reservations
+                List<ReservationBatchItem> accepted = new ArrayList<>(pending.size());
+                for (ReservationBatchItem item : pending) {
+                    Reservation entity = item.getReservation();
+                    if (isAvailable(null, entity.getArrivalDate(), entity.getDepartureDate())) {
+                        accepted.add(item);
+                    } else {
+                        item.rejected(ErrorMessages.NOT_AVAILABLE.getMessage());
+                    }
+                }
+                if (!accepted.isEmpty() && (!allOrNothing || (accepted.size() == pending.size()))) {
+                    reservationJdbcWriter.insert(accepted.stream().map(ReservationBatchItem::getReservation).collect(Collectors.toList()));
+                    accepted.forEach(ReservationBatchItem::created);
+                }
+                return null;
+            }, periods);
+        } catch (NotAvailableException e) {
+            //A night was claimed by another node. Nothing was written, refresh the calendar
+            for (ReservationBatchItem item : pending) {
+                Reservation entity = item.getReservation();
+                reservationCalendar.sync(entity.getArrivalDate(), entity.getDepartureDate(),
+                        reservationNightRepository.findByNightGreaterThanEqualAndNightLessThan(entity.getArrivalDate(), entity.getDepartureDate()));
+            }
+            throw e;
+        }
+
+        for (ReservationBatchItem item : pending) {
+            if (item.getStatus() == ReservationBatchItem.Status.CREATED) {
+                Reservation entity = item.getReservation();
+                reservationCalendar.occupy(entity.getId(), entity.getArrivalDate(), entity.getDepartureDate());
+                reservationCache.put(entity);
+                eventPublisher.publishEvent(new ReservationChangedEvent(entity.getId(), null, null,
+                        entity.getArrivalDate(), entity.getDepartureDate()));
+            }
+        }
     }
 
     /**
      * Updates a reservation
      * Only the non-null fields are used to update the reservation
-     * It is synchronized to avoid multiple saves at the same time and allow to check for overlapping
+     * The reservation is locked during the update. A change of the guest only is a single conditional statement. If
+     * the dates change, the current and new nights are locked too and the nights claimed by the reservation are
+     * replaced in the same transaction as the reservation, which is only updated if it did not change since it was read
      *
      * @param entity Reservation to update
      * @return Updated reservation
@@ -66,14 +371,10 @@ public class ReservationService {
      * @throws InvalidReservationException If only one date of the range is specified
      * @throws NotAvailableException if the campsite is not available in the requested period
      * @throws InvalidDateException if the date period is not valid or violates the constraints
+     * @throws CalendarBusyException if the reservation or its nights can't be locked in time, or the reservation was changed meanwhile by another node
      */
-    public synchronized Reservation update(Reservation entity) {
-
-        //Check if reservation exists
-        Optional<Reservation> optionalReservation = reservationRepository.findById(entity.getId());
-        if (!optionalReservation.isPresent()) {
-            throw new ReservationNotFoundException(ErrorMessages.RESERVATION_NOT_FOUND.getMessage());
-        }
+    public Reservation update(Reservation entity) {
+        entity.setId(ReservationIds.parse(entity.getId()));
 
         //Check that if a date is being updated the other is too
         if ((entity.getArrivalDate() != null && entity.getDepartureDate() == null) ||
@@ -90,43 +391,85 @@ public class ReservationService {
             throw new InvalidReservationException(ErrorMessages.EMPTY_UPDATE.getMessage());
         }
 
-        //Update fields
-        Reservation reservationToUpdate = optionalReservation.get();
-        if (entity.getGuestName() != null) {
-            reservationToUpdate.setGuestName(entity.getGuestName());
-        }
-        if (entity.getGuestMail() != null) {
-            reservationToUpdate.setGuestMail(entity.getGuestMail());
-        }
-        if (entity.getArrivalDate() != null) { //If it's not null then both dates are not
-            reservationToUpdate.setArrivalDate(entity.getArrivalDate());
-            reservationToUpdate.setDepartureDate(entity.getDepartureDate());
-        }
-
-        //Check if there is an overlapping reservation
-        List<Reservation> overlappingReservations = reservationRepository.findByDepartureDateGreaterThanAndArrivalDateLessThanOrderByArrivalDate(reservationToUpdate.getArrivalDate(), reservationToUpdate.getDepartureDate());
+        //The reservation and the nights are locked within the same timeout
+        long deadline = lockDeadline();
+        try (ReservationLocks.Held reservation = reservationLocks.lockReservation(deadline, entity.getId())) {
+            if (entity.getArrivalDate() == null) { //If it's null then both dates are, the nights don't change
+                Reservation updatedEntity = transactionTemplate.execute(status -> {
+                    if (reservationJdbcWriter.updateGuest(entity.getId(), entity.getGuestName(), entity.getGuestMail()) == 0) {
+                        throw new ReservationNotFoundException(ErrorMessages.RESERVATION_NOT_FOUND.getMessage());
+                    }
+                    return reservationRepository.findById(entity.getId()).get();
+                });
+                reservationCache.put(updatedEntity);
+                eventPublisher.publishEvent(new ReservationChangedEvent(updatedEntity.getId(), updatedEntity.getArrivalDate(), updatedEntity.getDepartureDate(),
+                        updatedEntity.getArrivalDate(), updatedEntity.getDepartureDate()));
+                return updatedEntity;
+            }
 
-        if (overlappingReservations.size() > 0) {
-            //If there is only one overlapping reservation, it can be the one being updated. In this case, it is updated.
-            if ((overlappingReservations.size() == 1) &&
-                    (overlappingReservations.get(0).getId() == reservationToUpdate.getId())) {
-                return reservationRepository.save(reservationToUpdate);
-            } else {
-                throw new NotAvailableException(ErrorMessages.NOT_AVAILABLE.getMessage());
+            //The current dates are needed to lock and release their nights
+            Optional<Reservation> optionalReservation = reservationRepository.findById(entity.getId());
+            if (!optionalReservation.isPresent()) {
+                throw new ReservationNotFoundException(ErrorMessages.RESERVATION_NOT_FOUND.getMessage());
             }
-        }
 
-        return reservationRepository.save(reservationToUpdate);
+            //The entity read is not modified, it may be managed and would be written again when flushed
+            Reservation currentEntity = optionalReservation.get();
+            Reservation updatedEntity = new Reservation();
+            updatedEntity.setId(currentEntity.getId());
+            updatedEntity.setGuestName((entity.getGuestName() != null) ? entity.getGuestName() : currentEntity.getGuestName());
+            updatedEntity.setGuestMail((entity.getGuestMail() != null) ? entity.getGuestMail() : currentEntity.getGuestMail());
+            updatedEntity.setArrivalDate(entity.getArrivalDate());
+            updatedEntity.setDepartureDate(entity.getDepartureDate());
+            updatedEntity.setVersion(currentEntity.getVersion() + 1);
+
+            LocalDate previousArrivalDate = currentEntity.getArrivalDate();
+            LocalDate previousDepartureDate = currentEntity.getDepartureDate();
+            executeClaiming(deadline, updatedEntity.getArrivalDate(), updatedEntity.getDepartureDate(), status -> {
+                //Check if there is an overlapping reservation other than the one being updated
+                if (!isAvailable(updatedEntity.getId(), updatedEntity.getArrivalDate(), updatedEntity.getDepartureDate())) {
+                    throw new NotAvailableException(ErrorMessages.NOT_AVAILABLE.getMessage());
+                }
+                reservationNightRepository.releaseAll(updatedEntity.getId());
+                reservationJdbcWriter.claimNights(updatedEntity.getId(), updatedEntity.getArrivalDate(), updatedEntity.getDepartureDate());
+                if (reservationJdbcWriter.update(updatedEntity, currentEntity.getVersion()) == 0) {
+                    //Deleted or updated by another node since it was read. Nothing is written
+                    if (!reservationRepository.existsById(updatedEntity.getId())) {
+                        throw new ReservationNotFoundException(ErrorMessages.RESERVATION_NOT_FOUND.getMessage());
+                    }
+                    throw new CalendarBusyException(ErrorMessages.CALENDAR_BUSY.getMessage());
+                }
+                return null;
+            }, previousArrivalDate, previousDepartureDate);
+
+            reservationCalendar.release(updatedEntity.getId(), previousArrivalDate, previousDepartureDate);
+            reservationCalendar.occupy(updatedEntity.getId(), updatedEntity.getArrivalDate(), updatedEntity.getDepartureDate());
+            reservationCache.put(updatedEntity);
+            eventPublisher.publishEvent(new ReservationChangedEvent(updatedEntity.getId(), previousArrivalDate, previousDepartureDate,
+                    updatedEntity.getArrivalDate(), updatedEntity.getDepartureDate()));
+            return updatedEntity;
+        }
     }
 
     /**
      * Gets a reservation given its Id
+     * It is read through the reservation cache, and may be read from a replica, see ReplicaRead. It must not be modified
+     * A client pinned to the primary skips the cache, and what is read from a replica is not stored in it
      * @param id Id of the reservation
      * @return Reservation with the given Id
      * @throws ReservationNotFoundException If the reservation does not exist
      */
+    @ReplicaRead
     public Reservation get(String id) {
-        Optional<Reservation> reservation = reservationRepository.findById(id);
+        String reservationId = ReservationIds.parse(id);
+        Optional<Reservation> reservation;
+        if (DataSourceRoute.isPinnedToPrimary()) {
+            //The client may have written through another node, the cache of this node may be older than the primary
+            reservation = reservationRepository.findById(reservationId);
+        } else {
+            reservation = reservationCache.get(reservationId, () -> reservationRepository.findById(reservationId),
+                    !DataSourceRoute.isReplicaRead());
+        }
 
         if (!reservation.isPresent()) {
             throw new ReservationNotFoundException(ErrorMessages.RESERVATION_NOT_FOUND.getMessage());
@@ -135,16 +478,157 @@ public class ReservationService {
         return reservation.get();
     }
 
+    /**
+     * Gets the version of a reservation if it is in the reservation cache, without reading it
+     * A client pinned to the primary gets null, as it skips the cache
+     * @param id Id of the reservation
+     * @return Version of the reservation, or null if it is not cached
+     * @throws ReservationNotFoundException If the id is not valid
+     */
+    public Long getCachedVersion(String id) {
+        String reservationId = ReservationIds.parse(id);
+        return DataSourceRoute.isPinnedToPrimary() ? null : reservationCache.getVersion(reservationId);
+    }
+
     /**
      * Deletes a reservation given its Id
+     * The reservation and the nights it claimed are deleted in the same transaction. Only its dates are read first,
+     * to free its nights in the calendar
      * @param id Id of the reservation to delete
      * @throws ReservationNotFoundException If the reservation to delete does not exist
+     * @throws CalendarBusyException if the reservation or its nights can't be locked in time
      */
     public void delete(String id) {
-        if (!reservationRepository.findById(id).isPresent()) {
-            throw new ReservationNotFoundException(ErrorMessages.RESERVATION_NOT_FOUND.getMessage());
+        String reservationId = ReservationIds.parse(id);
+        try (ReservationLocks.Held lock = reservationLocks.lockReservation(lockDeadline(), reservationId)) {
+            Optional<ReservationPeriod> period = reservationRepository.findPeriodById(reservationId);
+            if (!period.isPresent()) {
+                throw new ReservationNotFoundException(ErrorMessages.RESERVATION_NOT_FOUND.getMessage());
+            }
+
+            transactionTemplate.execute(status -> {
+                //Deleted by another node since it was read
+                if (reservationRepository.deleteReservation(reservationId) == 0) {
+                    throw new ReservationNotFoundException(ErrorMessages.RESERVATION_NOT_FOUND.getMessage());
+                }
+                reservationNightRepository.releaseAll(reservationId);
+                return null;
+            });
+            reservationCache.deleted(reservationId);
+
+            //Free the nights of the deleted reservation
+            LocalDate arrivalDate = period.get().getArrivalDate();
+            LocalDate departureDate = period.get().getDepartureDate();
+            reservationCalendar.release(reservationId, arrivalDate, departureDate);
+            eventPublisher.publishEvent(new ReservationChangedEvent(reservationId, arrivalDate, departureDate, null, null));
+        }
+    }
+
+    /**
+     * Checks if a period is free or occupied only by the given reservation
+     * The in-memory calendar is checked first. It only knows the reservations made in this node, so if it finds the
+     * period occupied it is confirmed with an existence probe on the nights claimed in the database. The claims are
+     * only read to refresh the calendar when it was wrong
+     *
+     * @param reservationId Id of the reservation allowed to occupy the period
+     * @param arrivalDate Period start
+     * @param departureDate Period end
+     * @return true if no other reservation occupies the period
+     */
+    private boolean isAvailable(String reservationId, LocalDate arrivalDate, LocalDate departureDate) {
+        if (reservationCalendar.isAvailable(arrivalDate, departureDate, reservationId)) {
+            return true;
+        }
+
+        //A null id would be compared with <>, which never matches, so a new reservation checks every claim
+        boolean claimed = (reservationId == null)
+                ? reservationNightRepository.existsByNightGreaterThanEqualAndNightLessThan(arrivalDate, departureDate)
+                : reservationNightRepository.existsByNightGreaterThanEqualAndNightLessThanAndReservationIdNot(arrivalDate, departureDate, reservationId);
+        if (claimed) {
+            return false;
+        }
+
+        //The nights were freed by another node
+        reservationCalendar.sync(arrivalDate, departureDate,
+                reservationNightRepository.findByNightGreaterThanEqualAndNightLessThan(arrivalDate, departureDate));
+        return true;
+    }
+
+    /**
+     * Executes through the write coordinator a write that claims the nights of a period
+     * If another node claimed any of the nights, the calendar is refreshed with the nights claimed in the database
+     *
+     * @param deadline System.nanoTime() by which the nights must be locked
+     * @param arrivalDate Period start
+     * @param departureDate Period end
+     * @param action Write to execute
+     * @param otherPeriods Pairs of arrival and departure dates of other nights to lock during the write
+     * @return Result of the write
+     * @throws NotAvailableException if a night is already claimed by another reservation
+     * @throws CalendarBusyException if the nights can't be locked in time
+     */
+    private <T> T executeClaiming(long deadline, LocalDate arrivalDate, LocalDate departureDate, TransactionCallback<T> action, LocalDate... otherPeriods) {
+        LocalDate[] periods = Arrays.copyOf(otherPeriods, otherPeriods.length + 2);
+        periods[otherPeriods.length] = arrivalDate;
+        periods[otherPeriods.length + 1] = departureDate;
+
+        try {
+            return writeCoordinator.execute(deadline, action, periods);
+        } catch (NotAvailableException e) {
+            if (!(e.getCause() instanceof DataIntegrityViolationException)) {
+                throw e; //Rejected by the calendar, it is already up to date
+            }
+            reservationCalendar.sync(arrivalDate, departureDate,
+                    reservationNightRepository.findByNightGreaterThanEqualAndNightLessThan(arrivalDate, departureDate));
+            throw e;
+        }
+    }
+
+    /**
+     * Validates that a new reservation has all the fields and valid dates
+     * @param entity Reservation to add
+     * @throws InvalidReservationException if the reservation has missing fields
+     * @throws InvalidDateException if the date period is not valid or violates the constraints
+     */
+    private void validateNewReservation(Reservation entity) {
+        //Check that all the fields are present
+        if ((entity.getArrivalDate() == null) || (entity.getDepartureDate() == null)) {
+            throw new InvalidReservationException(ErrorMessages.PROVIDE_DATES.getMessage());
+        }
+        if (entity.getGuestName() == null) {
+            throw new InvalidReservationException(ErrorMessages.PROVIDE_NAME.getMessage());
+        }
+        if (entity.getGuestMail() == null) {
+            throw new InvalidReservationException(ErrorMessages.PROVIDE_MAIL.getMessage());
+        }
+
+        validateReservationDates(entity.getArrivalDate(), entity.getDepartureDate());
+    }
+
+    /**
+     * @return Id for a new reservation
+     */
+    private String newReservationId() {
+        return reservationIdGenerator.next();
+    }
+
+    /**
+     * @return Deadline, as System.nanoTime(), for all the locks of a write starting now
+     */
+    private long lockDeadline() {
+        return System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lockTimeoutMillis);
+    }
+
+    /**
+     * Marks the reservations of a batch not created nor rejected yet as aborted
+     * @param items Reservations of the batch
+     */
+    private static void abortPending(List<ReservationBatchItem> items) {
+        for (ReservationBatchItem item : items) {
+            if (item.isPending()) {
+                item.aborted(ErrorMessages.BATCH_ABORTED.getMessage());
+            }
         }
-        reservationRepository.deleteById(id);
     }
 
     /**
@@ -0,0 +1,176 @@
+package com.campsite.reservation;
+
+import com.campsite.exception.CalendarBusyException;
+import com.campsite.exception.ErrorMessages;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coordinates the writes locking the rows of the nights in the calendar_days table (SELECT ... FOR UPDATE)
+ *
+ * The rows are locked in the same transaction as the write, so any node writing the same nights waits
+ * until it is committed. The wait is bounded by setting the lock timeout of the session to the time left to the
+ * deadline of the write, when it times out the write fails with CalendarBusyException. The connection goes back to
+ * the pool after the transaction, so the previous lock timeout of the session is restored before it completes.
+ */
+@Component
+@ConditionalOnProperty(name = WriteCoordinator.MODE_PROPERTY, havingValue = "row-lock")
+public class RowLockWriteCoordinator implements WriteCoordinator {
+
+    private static final Logger logger = LoggerFactory.getLogger(RowLockWriteCoordinator.class);
+
+    @Autowired
+    private CalendarDayRepository calendarDayRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private TransactionTemplate transactionTemplate;
+
+    private LockTimers lockTimers;
+
+    //Query that reads the lock timeout of the session and statement that sets it. Null if the database is not supported
+    private String lockTimeoutQuery;
+
+    private String lockTimeoutStatement;
+
+    //Unit and min value of the lock timeout of the database
+    private TimeUnit lockTimeoutUnit;
+
+    private long minLockTimeout;
+
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        lockTimers = new LockTimers(meterRegistry, "nights", "row-lock");
+
+        String database = jdbcTemplate.execute((ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        if ("MySQL".equalsIgnoreCase(database)) {
+            lockTimeoutQuery = "SELECT @@SESSION.innodb_lock_wait_timeout";
+            lockTimeoutStatement = "SET SESSION innodb_lock_wait_timeout = %d";
+            lockTimeoutUnit = TimeUnit.SECONDS;
+            minLockTimeout = 1;
+        } else if ("H2".equalsIgnoreCase(database)) {
+            lockTimeoutQuery = "CALL LOCK_TIMEOUT()";
+            lockTimeoutStatement = "SET LOCK_TIMEOUT %d";
+            lockTimeoutUnit = TimeUnit.MILLISECONDS;
+            minLockTimeout = 0;
+        }
+
+        //Create the rows of the bookable nights in advance, so writes don't have to
+        LocalDate today = LocalDate.now();
+        createDays(WriteCoordinator.nightsOf(today, today.plusDays(ReservationCalendar.WINDOW_DAYS)));
+    }
+
+    @Override
+    public <T> T execute(long deadline, TransactionCallback<T> action, LocalDate... periods) {
+        SortedSet<LocalDate> nights = WriteCoordinator.nightsOf(periods);
+        createDays(nights);
+
+        try {
+            return transactionTemplate.execute(status -> {
+                Long previousLockTimeout = setLockTimeout(deadline);
+                try {
+                    long waitStart = System.nanoTime();
+                    calendarDayRepository.findByDayInOrderByDay(nights);
+                    long acquiredAt = lockTimers.acquired(waitStart);
+
+                    //The rows stay locked until the transaction completes
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                        @Override
+                        public void afterCompletion(int completionStatus) {
+                            lockTimers.released(acquiredAt);
+                        }
+                    });
+
+                    return action.doInTransaction(status);
+                } finally {
+                    restoreLockTimeout(previousLockTimeout);
+                }
+            });
+        } catch (PessimisticLockingFailureException e) {
+            throw new CalendarBusyException(ErrorMessages.CALENDAR_BUSY.getMessage());
+        }
+    }
+
+    /**
+     * Sets the lock timeout of the session of the current transaction to the time left to the deadline, rounded up
+     *
+     * @param deadline System.nanoTime() by which the locks must be acquired
+     * @return Previous lock timeout of the session, null if the database is not supported
+     */
+    private Long setLockTimeout(long deadline) {
+        if (lockTimeoutStatement == null) {
+            return null;
+        }
+
+        Long previousLockTimeout = jdbcTemplate.queryForObject(lockTimeoutQuery, Long.class);
+        long unitNanos = lockTimeoutUnit.toNanos(1);
+        long lockTimeout = Math.max(minLockTimeout, (deadline - System.nanoTime() + unitNanos - 1) / unitNanos);
+        jdbcTemplate.execute(String.format(lockTimeoutStatement, lockTimeout));
+        return previousLockTimeout;
+    }
+
+    /**
+     * Restores the lock timeout of the session before the connection goes back to the pool
+     * A failure is only logged, not to hide the result of the write
+     *
+     * @param previousLockTimeout Lock timeout read by setLockTimeout
+     */
+    private void restoreLockTimeout(Long previousLockTimeout) {
+        if (previousLockTimeout == null) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.execute(String.format(lockTimeoutStatement, previousLockTimeout));
+        } catch (RuntimeException e) {
+            logger.warn("Could not restore the lock timeout of the session", e);
+        }
+    }
+
+    /**
+     * Creates the rows of the days that don't exist yet
+     * If another node creates the same day at the same time, the row already exists and the error is ignored
+     *
+     * @param days Days that must have a row
+     */
+    private void createDays(Set<LocalDate> days) {
+        Set<LocalDate> missingDays = new HashSet<>(days);
+        calendarDayRepository.findAllById(days).forEach(day -> missingDays.remove(day.getDay()));
+
+        for (LocalDate day : missingDays) {
+            try {
+                transactionTemplate.execute(status -> calendarDayRepository.save(new CalendarDay(day)));
+            } catch (DataIntegrityViolationException e) {
+                //Created by another node
+            }
+        }
+    }
+}
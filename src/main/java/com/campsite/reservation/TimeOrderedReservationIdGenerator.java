@@ -0,0 +1,69 @@
+package com.campsite.reservation;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates time-ordered ids, with the layout of a version 7 UUID
+ *
+ *  - 48 bits: milliseconds since the epoch
+ *  - 4 bits: version (7)
+ *  - 12 bits: sequence within the millisecond
+ *  - 2 bits: variant
+ *  - 14 bits: node id (campsite.reservation.id.node)
+ *  - 48 bits: random
+ *
+ * The timestamp and the sequence are taken from a single counter that never goes back, so the ids of a node are
+ * strictly increasing even if the clock is adjusted or more than 4096 ids are generated in a millisecond (the counter
+ * runs ahead of the clock until it catches up). The random bits come from ThreadLocalRandom, as they don't need to be
+ * unpredictable, and together with the node id make collisions between nodes negligible.
+ */
+@Component
+@ConditionalOnProperty(name = ReservationIdGenerator.GENERATOR_PROPERTY, havingValue = "time-ordered", matchIfMissing = true)
+public class TimeOrderedReservationIdGenerator implements ReservationIdGenerator {
+
+    static final int MAX_NODE = (1 << 14) - 1;
+
+    private static final int SEQUENCE_BITS = 12;
+
+    @Value("${campsite.reservation.id.node:0}")
+    private int node;
+
+    //Milliseconds shifted by SEQUENCE_BITS plus the sequence of the last generated id
+    private final AtomicLong last = new AtomicLong();
+
+    public TimeOrderedReservationIdGenerator() {
+    }
+
+    TimeOrderedReservationIdGenerator(int node) {
+        this.node = node;
+        init();
+    }
+
+    @PostConstruct
+    public void init() {
+        if ((node < 0) || (node > MAX_NODE)) {
+            throw new IllegalStateException("campsite.reservation.id.node must be between 0 and " + MAX_NODE);
+        }
+    }
+
+    @Override
+    public String next() {
+        long current = System.currentTimeMillis() << SEQUENCE_BITS;
+        long previous;
+        long next;
+        do {
+            previous = last.get();
+            next = Math.max(current, previous + 1);
+        } while (!last.compareAndSet(previous, next));
+
+        long mostSignificantBits = ((next >>> SEQUENCE_BITS) << 16) | (0x7L << 12) | (next & ((1 << SEQUENCE_BITS) - 1));
+        long leastSignificantBits = (0x2L << 62) | ((long) node << 48) | (ThreadLocalRandom.current().nextLong() & 0xFFFFFFFFFFFFL);
+        return ReservationIds.toString(mostSignificantBits, leastSignificantBits);
+    }
+}
@@ -0,0 +1,53 @@
+package com.campsite.reservation;
+
+import com.campsite.exception.CalendarBusyException;
+import org.springframework.transaction.support.TransactionCallback;
+
+import java.time.LocalDate;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Coordinates the writes that claim nights of the campsite
+ *
+ * The nights claimed in the database are what guarantees that reservations don't overlap. The coordinator
+ * serializes the writes on the same nights before they reach that check, so contending writers wait for
+ * each other a bounded time instead of failing with constraint violations or deadlocks.
+ *
+ * The implementation is selected with the property campsite.reservation.coordination.mode:
+ *  - local (default): locks in this JVM. Enough for a single node
+ *  - row-lock: SELECT ... FOR UPDATE on the rows of the nights in the calendar_days table
+ *  - named-lock: MySQL GET_LOCK on a name per night
+ */
+public interface WriteCoordinator {
+
+    String MODE_PROPERTY = "campsite.reservation.coordination.mode";
+
+    /**
+     * Executes a write in a transaction while holding the locks of the nights of the given periods
+     *
+     * @param deadline System.nanoTime() by which the locks must be acquired. It is set when the write starts, so
+     *                 the locks taken before by the same write are discounted from the lock timeout
+     * @param action Write to execute
+     * @param periods Pairs of arrival and departure dates of the nights to lock
+     * @return Result of the write
+     * @throws CalendarBusyException if the locks can't be acquired in time
+     */
+    <T> T execute(long deadline, TransactionCallback<T> action, LocalDate... periods);
+
+    /**
+     * Gets the nights of one or more periods
+     *
+     * @param periods Pairs of arrival and departure dates
+     * @return Nights sorted in ascending order
+     */
+    static SortedSet<LocalDate> nightsOf(LocalDate... periods) {
+        SortedSet<LocalDate> nights = new TreeSet<>();
+        for (int i = 0; i < periods.length; i += 2) {
+            for (LocalDate night = periods[i]; night.isBefore(periods[i + 1]); night = night.plusDays(1)) {
+                nights.add(night);
+            }
+        }
+        return nights;
+    }
+}
@@ -1,10 +1,13 @@
 package com.campsite;
 
 import com.campsite.exception.ErrorMessages;
+import com.campsite.exception.NotAvailableException;
 import com.campsite.reservation.Reservation;
+import com.campsite.reservation.ReservationBatchResource;
 import com.campsite.reservation.ReservationResource;
 import com.campsite.reservation.ReservationService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,14 +15,24 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.junit.Assert;
 
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @RunWith(SpringRunner.class)
@@ -37,6 +50,9 @@ public class CampsiteControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @Test
     public void testGetReservation() throws Exception {
         mvc.perform(get("/campsite/reservation/{id}", "5b4107f3-438c-4b89-a3ba-27b7044220bd"))
@@ -48,6 +64,61 @@ public class CampsiteControllerTest {
                 .andExpect(jsonPath("$.departureDate").value("2018-12-03"));
     }
 
+    @Test
+    public void testLinksBehindProxy() throws Exception {
+        mvc.perform(get("/campsite/reservation/{id}", "5b4107f3-438c-4b89-a3ba-27b7044220bd"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.links[0].rel").value("self"))
+                .andExpect(jsonPath("$.links[0].href").value("http://localhost/campsite/reservation/5b4107f3-438c-4b89-a3ba-27b7044220bd"));
+
+        mvc.perform(get("/campsite/reservation/{id}", "5b4107f3-438c-4b89-a3ba-27b7044220bd")
+                        .header("X-Forwarded-Proto", "https")
+                        .header("X-Forwarded-Host", "campsite.example.com"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.links[0].href").value("https://campsite.example.com/campsite/reservation/5b4107f3-438c-4b89-a3ba-27b7044220bd"));
+
+        mvc.perform(get("/campsite/availability/ranges?range={first}&range={second}", "2019-01-01/2019-01-05", "2019-01-10/2019-01-12"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.links[0].href").value("http://localhost/campsite/availability/ranges?range=2019-01-01/2019-01-05&range=2019-01-10/2019-01-12"))
+                .andExpect(jsonPath("$.availabilities[1].links[0].href").value("http://localhost/campsite/availability?from=2019-01-10&to=2019-01-12"));
+    }
+
+    @Test
+    public void testGetReservationNotModified() throws Exception {
+        String etag = mvc.perform(get("/campsite/reservation/{id}", "5b4107f3-438c-4b89-a3ba-27b7044220bd"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        mvc.perform(get("/campsite/reservation/{id}", "5b4107f3-438c-4b89-a3ba-27b7044220bd")
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void testAvailabilityNotModified() throws Exception {
+        String from = LocalDate.now().plusDays(1).toString();
+        String to = LocalDate.now().plusDays(5).toString();
+        String etag = mvc.perform(get("/campsite/availability/?from={from}&to={to}", from, to))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getHeader("ETag");
+
+        mvc.perform(get("/campsite/availability/?from={from}&to={to}", from, to)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+
+        //The same ETag doesn't hide an invalid range
+        mvc.perform(get("/campsite/availability/?from={from}&to={to}", to, from)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(ErrorMessages.INVALID_RANGE.getMessage()));
+    }
+
     @Test
     public void testGetReservationNotFound() throws Exception {
         mvc.perform(get("/campsite/reservation/{id}", "aaaaaa"))
@@ -55,6 +126,21 @@ public class CampsiteControllerTest {
                 .andExpect(jsonPath("$.message").value(ErrorMessages.RESERVATION_NOT_FOUND.getMessage()));
     }
 
+    @Test
+    public void testRejectionMetrics() throws Exception {
+        double rejected = meterRegistry.get("campsite.rejections").tag("reason", ErrorMessages.RESERVATION_NOT_FOUND.name()).counter().count();
+
+        mvc.perform(get("/campsite/reservation/{id}", "bbbbbb"))
+                .andExpect(status().isNotFound());
+
+        //The rejection is counted by reason and exposed in Prometheus format
+        Assert.assertEquals(rejected + 1, meterRegistry.get("campsite.rejections").tag("reason", ErrorMessages.RESERVATION_NOT_FOUND.name()).counter().count(), 0);
+        mvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("campsite_rejections_total")))
+                .andExpect(content().string(containsString("campsite_repository_seconds_count")));
+    }
+
     @Test
     public void testDeleteReservation() throws Exception {
         //Check that reservation exists
@@ -109,6 +195,178 @@ public class CampsiteControllerTest {
         Assert.assertEquals(LocalDate.now().plusDays(3), reservationSaved.getDepartureDate());
     }
 
+    @Test
+    public void testPostReservationRetriedWithIdempotencyKey() throws Exception {
+        ReservationResource reservation = new ReservationResource();
+        reservation.setGuestName("Diego Rivera");
+        reservation.setGuestMail("diegor@gmail.com");
+        reservation.setArrivalDate(LocalDate.now().plusDays(17));
+        reservation.setDepartureDate(LocalDate.now().plusDays(18));
+
+        String responseString = mvc.perform(post("/campsite/reservation")
+                        .header("Idempotency-Key", "6c1f6a0e-retry")
+                        .accept("application/campsite-reservation-response-v1-hal+json")
+                        .contentType("application/campsite-reservation-v1-hal+json")
+                        .content(objectMapper.writeValueAsString(reservation)))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        //The retry gets the same reservation instead of a not available error
+        mvc.perform(post("/campsite/reservation")
+                        .header("Idempotency-Key", "6c1f6a0e-retry")
+                        .accept("application/campsite-reservation-response-v1-hal+json")
+                        .contentType("application/campsite-reservation-v1-hal+json")
+                        .content(objectMapper.writeValueAsString(reservation)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string("Idempotent-Replayed", "true"))
+                .andExpect(content().string(responseString));
+
+        //The key can't be used for another reservation
+        reservation.setGuestName("Frida Kahlo");
+        mvc.perform(post("/campsite/reservation")
+                        .header("Idempotency-Key", "6c1f6a0e-retry")
+                        .accept("application/campsite-reservation-response-v1-hal+json")
+                        .contentType("application/campsite-reservation-v1-hal+json")
+                        .content(objectMapper.writeValueAsString(reservation)))
+                .andExpect(status().isConflict())
+                .andExpect(jsonPath("$.message").value(ErrorMessages.IDEMPOTENCY_KEY_REUSED.getMessage()));
+    }
+
+    @Test
+    public void testBatchReservations() throws Exception {
+        //Two reservations one after the other and a third one overlapping the second
+        List<ReservationResource> reservations = new ArrayList<>();
+        int[][] offsets = { { 23, 24 }, { 24, 26 }, { 25, 26 } };
+        for (int[] offset : offsets) {
+            ReservationResource reservation = new ReservationResource();
+            reservation.setGuestName("Diego Rivera");
+            reservation.setGuestMail("diegor@gmail.com");
+            reservation.setArrivalDate(LocalDate.now().plusDays(offset[0]));
+            reservation.setDepartureDate(LocalDate.now().plusDays(offset[1]));
+            reservations.add(reservation);
+        }
+        ReservationBatchResource batch = new ReservationBatchResource();
+        batch.setReservations(reservations);
+
+        //All or nothing: none is made
+        mvc.perform(post("/campsite/reservation/batch")
+                .accept("application/campsite-reservation-batch-response-v1-hal+json")
+                .contentType("application/campsite-reservation-batch-v1-hal+json")
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.results", hasSize(3)))
+                .andExpect(jsonPath("$.results[0].status").value("ABORTED"))
+                .andExpect(jsonPath("$.results[1].status").value("ABORTED"))
+                .andExpect(jsonPath("$.results[2].status").value("REJECTED"))
+                .andExpect(jsonPath("$.results[2].message").value(ErrorMessages.NOT_AVAILABLE.getMessage()));
+
+        //Best effort: the first two are made
+        batch.setMode(ReservationBatchResource.Mode.BEST_EFFORT);
+        String responseString = mvc.perform(post("/campsite/reservation/batch")
+                .accept("application/campsite-reservation-batch-response-v1-hal+json")
+                .contentType("application/campsite-reservation-batch-v1-hal+json")
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.results[0].status").value("CREATED"))
+                .andExpect(jsonPath("$.results[0].reservation.arrivalDate").value(LocalDate.now().plusDays(23).toString()))
+                .andExpect(jsonPath("$.results[1].status").value("CREATED"))
+                .andExpect(jsonPath("$.results[2].status").value("REJECTED"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        //The reservations made can be read and are removed for the other tests
+        for (int i = 0; i < 2; i++) {
+            String reservationId = objectMapper.readTree(responseString).path("results").path(i).path("reservation").path("reservationId").asText();
+            mvc.perform(get("/campsite/reservation/{id}", reservationId))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.departureDate").value(LocalDate.now().plusDays(offsets[i][1]).toString()));
+            reservationService.delete(reservationId);
+        }
+    }
+
+    @Test
+    public void testBatchOverlappingExistingReservation() throws Exception {
+        //Make a reservation 9 days from now
+        Reservation existing = new Reservation();
+        existing.setGuestName("Diego Rivera");
+        existing.setGuestMail("diegor@gmail.com");
+        existing.setArrivalDate(LocalDate.now().plusDays(9));
+        existing.setDepartureDate(LocalDate.now().plusDays(10));
+        String existingId = reservationService.add(existing).getId();
+
+        //A batch with one reservation overlapping it and another one free
+        List<ReservationResource> reservations = new ArrayList<>();
+        int[][] offsets = { { 9, 10 }, { 20, 21 } };
+        for (int[] offset : offsets) {
+            ReservationResource reservation = new ReservationResource();
+            reservation.setGuestName("Diego Rivera");
+            reservation.setGuestMail("diegor@gmail.com");
+            reservation.setArrivalDate(LocalDate.now().plusDays(offset[0]));
+            reservation.setDepartureDate(LocalDate.now().plusDays(offset[1]));
+            reservations.add(reservation);
+        }
+        ReservationBatchResource batch = new ReservationBatchResource();
+        batch.setReservations(reservations);
+        batch.setMode(ReservationBatchResource.Mode.BEST_EFFORT);
+
+        //Only the overlapping one is rejected
+        String responseString = mvc.perform(post("/campsite/reservation/batch")
+                .accept("application/campsite-reservation-batch-response-v1-hal+json")
+                .contentType("application/campsite-reservation-batch-v1-hal+json")
+                .content(objectMapper.writeValueAsString(batch)))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.results[0].status").value("REJECTED"))
+                .andExpect(jsonPath("$.results[0].message").value(ErrorMessages.NOT_AVAILABLE.getMessage()))
+                .andExpect(jsonPath("$.results[1].status").value("CREATED"))
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        //Remove the reservations for the other tests
+        reservationService.delete(objectMapper.readTree(responseString).path("results").path(1).path("reservation").path("reservationId").asText());
+        reservationService.delete(existingId);
+    }
+
+    @Test
+    public void testGroupOverlappingExistingReservation() throws Exception {
+        //Make a reservation 16 days from now
+        Reservation existing = new Reservation();
+        existing.setGuestName("Diego Rivera");
+        existing.setGuestMail("diegor@gmail.com");
+        existing.setArrivalDate(LocalDate.now().plusDays(16));
+        existing.setDepartureDate(LocalDate.now().plusDays(17));
+        String existingId = reservationService.add(existing).getId();
+
+        //Queue at the same time one reservation overlapping it and another one free, so they are written in a group
+        List<CompletableFuture<Reservation>> results = new ArrayList<>();
+        int[][] offsets = { { 16, 17 }, { 2, 3 } };
+        for (int[] offset : offsets) {
+            Reservation reservation = new Reservation();
+            reservation.setGuestName("Diego Rivera");
+            reservation.setGuestMail("diegor@gmail.com");
+            reservation.setArrivalDate(LocalDate.now().plusDays(offset[0]));
+            reservation.setDepartureDate(LocalDate.now().plusDays(offset[1]));
+            results.add(reservationService.addAsync(reservation));
+        }
+
+        //Only the overlapping one is rejected
+        try {
+            results.get(0).join();
+            Assert.fail("The overlapping reservation was made");
+        } catch (CompletionException e) {
+            Assert.assertTrue(e.getCause() instanceof NotAvailableException);
+        }
+        Reservation created = results.get(1).join();
+        Assert.assertEquals(LocalDate.now().plusDays(2), reservationService.get(created.getId()).getArrivalDate());
+
+        //Remove the reservations for the other tests
+        reservationService.delete(created.getId());
+        reservationService.delete(existingId);
+    }
+
     @Test
     public void testOverlappingReservations() throws Exception {
         //Make first reservation 6 days from now
@@ -402,6 +660,97 @@ public class CampsiteControllerTest {
                 .andExpect(jsonPath("$.availableRanges[2].to").value("2017-01-31"));
     }
 
+    @Test
+    public void testMultiRangeAvailability() throws Exception {
+        //Same reservations of 2017-01 as in testAvailability, with overlapping ranges
+        mvc.perform(get("/campsite/availability/ranges?range={first}&range={second}&range={third}",
+                        "2017-01-06/2017-01-31", "2017-01-10/2017-01-16", "2017-01-01/2017-01-05"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.availabilities", hasSize(3)))
+                .andExpect(jsonPath("$.availabilities[0].availableRanges", hasSize(3)))
+                .andExpect(jsonPath("$.availabilities[0].availableRanges[2].from").value("2017-01-22"))
+                .andExpect(jsonPath("$.availabilities[0].availableRanges[2].to").value("2017-01-31"))
+                .andExpect(jsonPath("$.availabilities[1].requestedRange.from").value("2017-01-10"))
+                .andExpect(jsonPath("$.availabilities[1].availableRanges", hasSize(1)))
+                .andExpect(jsonPath("$.availabilities[1].availableRanges[0].from").value("2017-01-11"))
+                .andExpect(jsonPath("$.availabilities[1].availableRanges[0].to").value("2017-01-15"))
+                .andExpect(jsonPath("$.availabilities[2].availableRanges", hasSize(1)))
+                .andExpect(jsonPath("$.availabilities[2].availableRanges[0].to").value("2017-01-05"));
+
+        mvc.perform(get("/campsite/availability/ranges?range={range}", "2017-01-06"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value(ErrorMessages.INVALID_RANGE_FORMAT.getMessage()));
+    }
+
+    @Test
+    public void testAvailabilityStream() throws Exception {
+        MvcResult stream = mvc.perform(get("/campsite/availability/stream").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        Reservation reservation = new Reservation();
+        reservation.setGuestName("Diego Rivera");
+        reservation.setGuestMail("diegor@gmail.com");
+        reservation.setArrivalDate(LocalDate.now().plusDays(12));
+        reservation.setDepartureDate(LocalDate.now().plusDays(14));
+        String reservationId = reservationService.add(reservation).getId();
+        reservationService.delete(reservationId);
+
+        //The changes are sent by another thread, wait for both of them
+        String closed = "\"closed\":[{\"from\":\"" + LocalDate.now().plusDays(12) + "\",\"to\":\"" + LocalDate.now().plusDays(14) + "\"}]";
+        String opened = "\"opened\":[{\"from\":\"" + LocalDate.now().plusDays(12) + "\",\"to\":\"" + LocalDate.now().plusDays(14) + "\"}]";
+        String content = "";
+        for (int i = 0; (i < 50) && !(content.contains(closed) && content.contains(opened)); i++) {
+            Thread.sleep(100);
+            content = stream.getResponse().getContentAsString();
+        }
+        Assert.assertTrue(content, content.startsWith("event:ready"));
+        Assert.assertTrue(content, content.contains(closed));
+        Assert.assertTrue(content, content.contains(opened));
+        Assert.assertTrue(content.indexOf(closed) < content.indexOf(opened));
+    }
+
+    @Test
+    public void testAvailabilityAfterReservationChanges() throws Exception {
+        LocalDate from = LocalDate.now().plusDays(27);
+        LocalDate to = LocalDate.now().plusDays(30);
+
+        mvc.perform(get("/campsite/availability/?from={from}&to={to}", from.toString(), to.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.availableRanges", hasSize(1)));
+
+        //Make a reservation in the middle of the range, the cached availability must not be used
+        ReservationResource reservation = new ReservationResource();
+        reservation.setGuestName("Diego Rivera");
+        reservation.setGuestMail("diegor@gmail.com");
+        reservation.setArrivalDate(LocalDate.now().plusDays(28));
+        reservation.setDepartureDate(LocalDate.now().plusDays(29));
+
+        String responseString = mvc.perform(post("/campsite/reservation")
+                .accept("application/campsite-reservation-response-v1-hal+json")
+                .contentType("application/campsite-reservation-v1-hal+json")
+                .content(objectMapper.writeValueAsString(reservation)))
+                .andExpect(status().isCreated())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+        String reservationId = objectMapper.readValue(responseString, ReservationResource.class).getReservationId();
+
+        mvc.perform(get("/campsite/availability/?from={from}&to={to}", from.toString(), to.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.availableRanges", hasSize(2)))
+                .andExpect(jsonPath("$.availableRanges[0].to").value(LocalDate.now().plusDays(28).toString()))
+                .andExpect(jsonPath("$.availableRanges[1].from").value(LocalDate.now().plusDays(29).toString()));
+
+        //Cancel it, the whole range is available again
+        mvc.perform(delete("/campsite/reservation/{id}", reservationId))
+                .andExpect(status().isNoContent());
+
+        mvc.perform(get("/campsite/availability/?from={from}&to={to}", from.toString(), to.toString()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.availableRanges", hasSize(1)));
+    }
+
     @Test
     public void testAvailabilityDefaultValues() throws Exception {
         mvc.perform(get("/campsite/availability"))
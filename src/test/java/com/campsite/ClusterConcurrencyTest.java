@@ -0,0 +1,185 @@
+package com.campsite;
+
+import com.campsite.exception.CalendarBusyException;
+import com.campsite.exception.NotAvailableException;
+import com.campsite.reservation.Reservation;
+import com.campsite.reservation.ReservationNightRepository;
+import com.campsite.reservation.ReservationService;
+import com.campsite.reservation.WriteCoordinator;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs contending writers across two application contexts (nodes) sharing the same database
+ */
+public class ClusterConcurrencyTest {
+
+    private static final String CREATED = "created";
+    private static final String NOT_AVAILABLE = "notAvailable";
+    private static final String BUSY = "busy";
+
+    private List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+
+    //The in-memory database outlives the nodes, so each test uses its own
+    private String database = "cluster-" + UUID.randomUUID();
+
+    @After
+    public void stopNodes() {
+        //Stop the node that created the schema last
+        Collections.reverse(nodes);
+        for (ConfigurableApplicationContext node : nodes) {
+            node.close();
+        }
+        nodes.clear();
+    }
+
+    @Test
+    public void testConcurrentCreateReservationWithRowLocks() throws Exception {
+        testConcurrentCreateReservation("row-lock");
+    }
+
+    @Test
+    public void testConcurrentCreateReservationWithNamedLocks() throws Exception {
+        testConcurrentCreateReservation("named-lock");
+    }
+
+    private void testConcurrentCreateReservation(String mode) throws Exception {
+        ReservationService firstNode = startNode(mode, true).getBean(ReservationService.class);
+        ReservationService secondNode = startNode(mode, false).getBean(ReservationService.class);
+
+        LinkedBlockingQueue<String> results = new LinkedBlockingQueue<>();
+        LinkedBlockingQueue<Exception> failures = new LinkedBlockingQueue<>();
+        String[] reservationId = new String[1];
+        int threadCount = 10;
+
+        //Try to make the same reservation in 10 parallel threads, half of them in each node
+        List<Thread> threads = new LinkedList<>();
+        for (int i = 0; i < threadCount; i++) {
+            ReservationService node = (i % 2 == 0) ? firstNode : secondNode;
+            threads.add(new Thread(() -> makeReservation(node, 21, 22, reservationId, results, failures)));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue(failures.toString(), failures.isEmpty()); //No unexpected errors
+        assertEquals(threadCount, results.size());
+        assertEquals(1, Collections.frequency(results, CREATED)); //Only one reservation is created
+        assertEquals(threadCount - 1, Collections.frequency(results, NOT_AVAILABLE) + Collections.frequency(results, BUSY)); //The remaining fail
+
+        //The night is claimed only once, by the created reservation
+        ReservationNightRepository nights = nodes.get(0).getBean(ReservationNightRepository.class);
+        assertTrue(nights.findById(LocalDate.now().plusDays(21)).isPresent());
+        assertEquals(reservationId[0], nights.findById(LocalDate.now().plusDays(21)).get().getReservationId());
+
+        //The other node sees the reservation and can delete it
+        secondNode.delete(reservationId[0]);
+        assertFalse(nights.findById(LocalDate.now().plusDays(21)).isPresent());
+    }
+
+    @Test
+    public void testNamedLockTimesOut() throws Exception {
+        ConfigurableApplicationContext node = startNode("named-lock", true,
+                "--campsite.reservation.coordination.lock-timeout-ms=1000");
+        LocalDate night = LocalDate.now().plusDays(21);
+
+        //Another session holds the lock of the night
+        try (Connection connection = node.getBean(DataSource.class).getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("SELECT GET_LOCK('campsite-night-" + night + "', 10)");
+
+            Reservation reservation = new Reservation();
+            reservation.setGuestName("Diego Rivera");
+            reservation.setGuestMail("diegor@gmail.com");
+            reservation.setArrivalDate(night);
+            reservation.setDepartureDate(night.plusDays(1));
+
+            //The write waits the lock timeout for it and fails
+            long start = System.nanoTime();
+            try {
+                node.getBean(ReservationService.class).add(reservation);
+                fail("The reservation was made without the lock");
+            } catch (CalendarBusyException e) {
+                long waitedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                assertTrue("Waited " + waitedMillis + " ms", (waitedMillis >= 900) && (waitedMillis < 5000));
+            }
+
+            statement.execute("SELECT RELEASE_LOCK('campsite-night-" + night + "')");
+        }
+
+        //Once released the night can be reserved
+        Reservation reservation = new Reservation();
+        reservation.setGuestName("Diego Rivera");
+        reservation.setGuestMail("diegor@gmail.com");
+        reservation.setArrivalDate(night);
+        reservation.setDepartureDate(night.plusDays(1));
+        ReservationService service = node.getBean(ReservationService.class);
+        service.delete(service.add(reservation).getId());
+    }
+
+    private ConfigurableApplicationContext startNode(String mode, boolean createSchema, String... extraProperties) {
+        //Properties are passed as command line arguments to override the ones of the test profile
+        List<String> properties = new ArrayList<>();
+        properties.add("--" + WriteCoordinator.MODE_PROPERTY + "=" + mode);
+        //All the nodes share the same in-memory database. H2 emulates the MySQL named lock functions
+        properties.add("--spring.datasource.url=jdbc:h2:mem:" + database + ";MODE=MySQL;MV_STORE=FALSE;MVCC=FALSE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=5000"
+                + ";INIT=CREATE ALIAS IF NOT EXISTS GET_LOCK FOR \"com.campsite.H2NamedLocks.getLock\""
+                + "\\;CREATE ALIAS IF NOT EXISTS RELEASE_LOCK FOR \"com.campsite.H2NamedLocks.releaseLock\"");
+        properties.add("--spring.jmx.enabled=false");
+        if (!createSchema) {
+            properties.add("--spring.jpa.hibernate.ddl-auto=none");
+            properties.add("--spring.datasource.initialization-mode=never");
+        }
+        Collections.addAll(properties, extraProperties);
+
+        ConfigurableApplicationContext node = new SpringApplicationBuilder(UpgradeApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("test")
+                .run(properties.toArray(new String[0]));
+        nodes.add(node);
+        return node;
+    }
+
+    private void makeReservation(ReservationService node, int fromOffset, int toOffset, String[] reservationId,
+                                 LinkedBlockingQueue<String> results, LinkedBlockingQueue<Exception> failures) {
+        Reservation reservation = new Reservation();
+        reservation.setGuestName("Diego Rivera");
+        reservation.setGuestMail("diegor@gmail.com");
+        reservation.setArrivalDate(LocalDate.now().plusDays(fromOffset));
+        reservation.setDepartureDate(LocalDate.now().plusDays(toOffset));
+
+        try {
+            reservationId[0] = node.add(reservation).getId();
+            results.add(CREATED);
+        } catch (NotAvailableException e) {
+            results.add(NOT_AVAILABLE);
+        } catch (CalendarBusyException e) {
+            results.add(BUSY);
+        } catch (Exception e) {
+            failures.add(e);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.campsite;
+
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.jdbc.JdbcConnection;
+
+import java.sql.Connection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Emulation of the MySQL named lock functions (GET_LOCK and RELEASE_LOCK) for H2
+ *
+ * Register them with:
+ *   CREATE ALIAS GET_LOCK FOR "com.campsite.H2NamedLocks.getLock"
+ *   CREATE ALIAS RELEASE_LOCK FOR "com.campsite.H2NamedLocks.releaseLock"
+ *
+ * H2 executes the statements of a database one at a time, holding the database monitor (unless it is multi-threaded).
+ * GET_LOCK waits for a lock held by another session on that monitor, as the H2 table locks do, so the session holding
+ * the lock can run its statements and release it meanwhile.
+ */
+public class H2NamedLocks {
+
+    //Session id that holds each lock, by database
+    private static final Map<Database, Map<String, Integer>> owners = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * @param timeout Seconds to wait for the lock, negative to wait forever
+     * @return 1 if the lock was acquired, 0 if it timed out
+     */
+    public static int getLock(Connection connection, String name, int timeout) {
+        Session session = (Session) ((JdbcConnection) connection).getSession();
+        Database database = session.getDatabase();
+        long deadline = System.currentTimeMillis() + timeout * 1000L;
+
+        synchronized (database) {
+            Map<String, Integer> locks = owners.computeIfAbsent(database, db -> new HashMap<>());
+            while (true) {
+                Integer owner = locks.get(name);
+                if ((owner == null) || (owner == session.getId())) {
+                    locks.put(name, session.getId());
+                    return 1;
+                }
+
+                long remaining = deadline - System.currentTimeMillis();
+                if ((timeout >= 0) && (remaining <= 0)) {
+                    return 0;
+                }
+                try {
+                    database.wait((timeout >= 0) ? remaining : 0);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 1 if the lock was released, 0 if it is held by another session and null if it is not held
+     */
+    public static Integer releaseLock(Connection connection, String name) {
+        Session session = (Session) ((JdbcConnection) connection).getSession();
+        Database database = session.getDatabase();
+
+        synchronized (database) {
+            Map<String, Integer> locks = owners.computeIfAbsent(database, db -> new HashMap<>());
+            Integer owner = locks.get(name);
+            if (owner == null) {
+                return null;
+            }
+            if (owner != session.getId()) {
+                return 0;
+            }
+            locks.remove(name);
+            database.notifyAll();
+            return 1;
+        }
+    }
+}
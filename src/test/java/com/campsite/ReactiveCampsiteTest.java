@@ -0,0 +1,98 @@
+package com.campsite;
+
+import com.campsite.exception.ErrorMessages;
+import com.campsite.reservation.ReservationResource;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.time.LocalDate;
+
+/**
+ * Runs the API in the reactive mode, on its own database
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK, classes = UpgradeApplication.class, properties = {
+        "spring.main.web-application-type=reactive",
+        "spring.datasource.url=jdbc:h2:mem:reactive;DB_CLOSE_ON_EXIT=FALSE",
+        "spring.jmx.enabled=false"
+})
+@AutoConfigureWebTestClient
+@ActiveProfiles("test")
+public class ReactiveCampsiteTest {
+
+    @Autowired
+    private WebTestClient client;
+
+    @Test
+    public void testAvailability() {
+        client.get().uri("/campsite/availability?from={from}&to={to}", "2017-01-10", "2017-01-16")
+                .accept(MediaType.valueOf("application/campsite-availability-response-v1-hal+json"))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.availableRanges.length()").isEqualTo(1)
+                .jsonPath("$.availableRanges[0].from").isEqualTo("2017-01-11")
+                .jsonPath("$.availableRanges[0].to").isEqualTo("2017-01-15");
+
+        client.get().uri("/campsite/availability?from={from}&to={to}", "2017-01-16", "2017-01-10")
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo(ErrorMessages.INVALID_RANGE.getMessage());
+    }
+
+    @Test
+    public void testReservationLifecycle() {
+        ReservationResource reservation = new ReservationResource();
+        reservation.setGuestName("Diego Rivera");
+        reservation.setGuestMail("diegor@gmail.com");
+        reservation.setArrivalDate(LocalDate.now().plusDays(4));
+        reservation.setDepartureDate(LocalDate.now().plusDays(6));
+
+        ReservationResource created = client.post().uri("/campsite/reservation")
+                .contentType(MediaType.valueOf("application/campsite-reservation-v1-hal+json"))
+                .accept(MediaType.valueOf("application/campsite-reservation-response-v1-hal+json"))
+                .syncBody(reservation)
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(ReservationResource.class)
+                .returnResult()
+                .getResponseBody();
+        String reservationId = created.getReservationId();
+        Assert.assertEquals(LocalDate.now().plusDays(4), created.getArrivalDate());
+
+        //The same nights can't be reserved twice
+        client.post().uri("/campsite/reservation")
+                .contentType(MediaType.valueOf("application/campsite-reservation-v1-hal+json"))
+                .syncBody(reservation)
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo(ErrorMessages.NOT_AVAILABLE.getMessage());
+
+        client.get().uri("/campsite/reservation/{id}", reservationId)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.guestName").isEqualTo("Diego Rivera")
+                .jsonPath("$.links[0].href").isEqualTo("/campsite/reservation/" + reservationId);
+
+        client.delete().uri("/campsite/reservation/{id}", reservationId)
+                .exchange()
+                .expectStatus().isNoContent();
+
+        client.get().uri("/campsite/reservation/{id}", reservationId)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo(ErrorMessages.RESERVATION_NOT_FOUND.getMessage());
+    }
+}
@@ -0,0 +1,75 @@
+package com.campsite.admission;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    public void testRejectsAboveLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 1, 10, 100);
+
+        for (int i = 0; i < 4; i++) {
+            Assert.assertTrue(limiter.tryAcquire());
+        }
+        Assert.assertFalse(limiter.tryAcquire());
+        Assert.assertEquals(4, limiter.getInFlight());
+
+        limiter.release(System.nanoTime(), false);
+        Assert.assertTrue(limiter.tryAcquire());
+    }
+
+    @Test
+    public void testLimitFollowsLatency() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 2, 200, 10);
+
+        //Flat latency with all the permits in use: the limit grows
+        runWindows(limiter, 20, 1);
+        int grownLimit = limiter.getLimit();
+        Assert.assertTrue(grownLimit > 20);
+
+        //The writes start to queue: the latency grows and the limit shrinks
+        runWindows(limiter, 20, 10);
+        int shrunkLimit = limiter.getLimit();
+        Assert.assertTrue(shrunkLimit < grownLimit / 2);
+        Assert.assertTrue(shrunkLimit >= 2);
+
+        //Lock timeouts halve the gradient, even if the latency does not change
+        runWindows(limiter, 20, 10);
+        int limit = limiter.getLimit();
+        for (int i = 0; i < 10; i++) {
+            Assert.assertTrue(limiter.tryAcquire());
+            limiter.release(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(10), true);
+        }
+        Assert.assertTrue(limiter.getLimit() < limit);
+    }
+
+    @Test
+    public void testIdleLimitDoesNotGrow() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 2, 200, 10);
+
+        //A single write at a time never uses the limit, so it is not raised
+        for (int i = 0; i < 100; i++) {
+            Assert.assertTrue(limiter.tryAcquire());
+            limiter.release(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(1), false);
+        }
+        Assert.assertEquals(20, limiter.getLimit());
+    }
+
+    /**
+     * Runs windows of writes using all the permits, with the given latency
+     */
+    private static void runWindows(AdaptiveConcurrencyLimiter limiter, int windows, long latencyMillis) {
+        for (int window = 0; window < windows; window++) {
+            int admitted = 0;
+            while (limiter.tryAcquire()) {
+                admitted++;
+            }
+            for (int i = 0; i < admitted; i++) {
+                limiter.release(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(latencyMillis), false);
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.campsite.availability;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.time.LocalDate;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+public class AvailabilityResponseCacheTest {
+
+    @Test
+    public void testBodiesAreReusedUntilTheVersionChanges() {
+        AvailabilityResponseCache cache = newCache(true, 0);
+        AtomicInteger loads = new AtomicInteger();
+
+        AvailabilityResponseCache.Body first = cache.get(1L, "2019-01-01/2019-01-05", "http://localhost", () -> load(loads));
+        AvailabilityResponseCache.Body second = cache.get(1L, "2019-01-01/2019-01-05", "http://localhost", () -> load(loads));
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, loads.get());
+
+        //The links of another host are different
+        cache.get(1L, "2019-01-01/2019-01-05", "https://campsite.example.com", () -> load(loads));
+        Assert.assertEquals(2, loads.get());
+
+        //A new version drops everything
+        cache.get(2L, "2019-01-01/2019-01-05", "http://localhost", () -> load(loads));
+        cache.get(2L, "2019-01-01/2019-01-05", "http://localhost", () -> load(loads));
+        Assert.assertEquals(3, loads.get());
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testOlderVersionIsNotStored() {
+        AvailabilityResponseCache cache = newCache(true, 0);
+        AtomicInteger loads = new AtomicInteger();
+        AvailabilityResponseCache.Body newer = cache.get(2L, "2019-01-01/2019-01-05", "http://localhost", () -> load(loads));
+
+        //A request that read the version before a change doesn't move the cache back nor store its body
+        cache.get(1L, "2019-01-01/2019-01-05", "http://localhost", () -> load(loads));
+        cache.get(1L, "2019-01-01/2019-01-05", "http://localhost", () -> load(loads));
+        Assert.assertEquals(3, loads.get());
+        Assert.assertSame(newer, cache.get(2L, "2019-01-01/2019-01-05", "http://localhost", () -> load(loads)));
+        Assert.assertEquals(3, loads.get());
+    }
+
+    @Test
+    public void testGzippedBodyMatchesJson() throws Exception {
+        AvailabilityResponseCache.Body body = newCache(true, 0).get(1L, "2019-01-01/2019-01-05", "", () -> load(new AtomicInteger()));
+        Assert.assertNotNull(body.getGzipped());
+
+        ByteArrayOutputStream json = new ByteArrayOutputStream();
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body.getGzipped()))) {
+            byte[] buffer = new byte[1024];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                json.write(buffer, 0, read);
+            }
+        }
+        Assert.assertEquals(new String(body.getJson(), "UTF-8"), new String(json.toByteArray(), "UTF-8"));
+
+        //Small bodies are not gzipped
+        Assert.assertNull(newCache(true, 1024).get(1L, "2019-01-01/2019-01-05", "", () -> load(new AtomicInteger())).getGzipped());
+        Assert.assertNull(newCache(false, 0).get(1L, "2019-01-01/2019-01-05", "", () -> load(new AtomicInteger())).getGzipped());
+    }
+
+    private static AvailabilityResponseCache newCache(boolean gzip, int gzipMinSize) {
+        AvailabilityResponseCache cache = new AvailabilityResponseCache(10, gzip, gzipMinSize);
+        ReflectionTestUtils.setField(cache, "objectMapper", new ObjectMapper());
+        return cache;
+    }
+
+    private static AvailabilityResource load(AtomicInteger loads) {
+        loads.incrementAndGet();
+        AvailabilityResource resource = new AvailabilityResource();
+        resource.setRequestedRange(new TimeRangeResource(LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 5)));
+        resource.setAvailableRanges(Collections.singletonList(new TimeRangeResource(LocalDate.of(2019, 1, 1), LocalDate.of(2019, 1, 5))));
+        return resource;
+    }
+}
@@ -0,0 +1,195 @@
+package com.campsite.availability;
+
+import com.campsite.reservation.Reservation;
+import com.campsite.reservation.ReservationChangedEvent;
+import com.campsite.reservation.ReservationPeriod;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the free periods index against the sweep over the sorted reservations it replaces
+ */
+public class FreeIntervalIndexTest {
+
+    private static final LocalDate START = LocalDate.of(2019, 1, 1);
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void testRebuildMatchesSweep() {
+        for (int round = 0; round < 50; round++) {
+            List<Reservation> reservations = new ArrayList<>();
+            for (int i = 0; i < 40; i++) {
+                addRandomReservation(reservations, "r" + i);
+            }
+            reservations.sort(Comparator.comparing(Reservation::getArrivalDate));
+
+            FreeIntervalIndex index = new FreeIntervalIndex();
+            index.rebuild(periods(reservations));
+
+            assertSameRanges(index, reservations);
+        }
+    }
+
+    @Test
+    public void testIncrementalChangesMatchSweep() {
+        List<Reservation> reservations = new ArrayList<>();
+        FreeIntervalIndex index = new FreeIntervalIndex();
+        index.rebuild(periods(reservations));
+
+        for (int i = 0; i < 2000; i++) {
+            int operation = random.nextInt(3);
+            if ((operation == 0) || reservations.isEmpty()) {
+                //Create
+                Reservation reservation = addRandomReservation(reservations, "r" + i);
+                if (reservation != null) {
+                    index.onReservationChanged(new ReservationChangedEvent(reservation.getId(), null, null,
+                            reservation.getArrivalDate(), reservation.getDepartureDate()));
+                }
+            } else if (operation == 1) {
+                //Move
+                Reservation reservation = reservations.remove(random.nextInt(reservations.size()));
+                Reservation moved = addRandomReservation(reservations, reservation.getId());
+                if (moved == null) {
+                    reservations.add(reservation);
+                } else {
+                    index.onReservationChanged(new ReservationChangedEvent(reservation.getId(), reservation.getArrivalDate(),
+                            reservation.getDepartureDate(), moved.getArrivalDate(), moved.getDepartureDate()));
+                }
+            } else {
+                //Delete
+                Reservation reservation = reservations.remove(random.nextInt(reservations.size()));
+                index.onReservationChanged(new ReservationChangedEvent(reservation.getId(), reservation.getArrivalDate(),
+                        reservation.getDepartureDate(), null, null));
+            }
+
+            reservations.sort(Comparator.comparing(Reservation::getArrivalDate));
+            assertSameRanges(index, reservations);
+        }
+    }
+
+    @Test
+    public void testChangesDuringRebuildAreKept() {
+        List<Reservation> reservations = new ArrayList<>();
+        FreeIntervalIndex index = new FreeIntervalIndex();
+        index.rebuild(periods(reservations));
+
+        //Changes applied while the reservations are loaded, the first one seen by the load and the second one not
+        index.startRebuild();
+        Reservation loaded = addRandomReservation(reservations, "loaded");
+        index.onReservationChanged(new ReservationChangedEvent(loaded.getId(), null, null,
+                loaded.getArrivalDate(), loaded.getDepartureDate()));
+        List<ReservationPeriod> periods = periods(reservations);
+        Reservation notLoaded = null;
+        while (notLoaded == null) {
+            notLoaded = addRandomReservation(reservations, "not-loaded");
+        }
+        index.onReservationChanged(new ReservationChangedEvent(notLoaded.getId(), null, null,
+                notLoaded.getArrivalDate(), notLoaded.getDepartureDate()));
+        index.rebuild(periods);
+
+        reservations.sort(Comparator.comparing(Reservation::getArrivalDate));
+        assertSameRanges(index, reservations);
+    }
+
+    @Test
+    public void testRangesOutsideReservations() {
+        FreeIntervalIndex index = new FreeIntervalIndex();
+        index.rebuild(new ArrayList<>());
+
+        List<TimeRangeResource> ranges = index.findAvailableRanges(START, START.plusDays(10));
+        Assert.assertEquals(1, ranges.size());
+        Assert.assertEquals(new TimeRangeResource(START, START.plusDays(10)), ranges.get(0));
+
+        index.onReservationChanged(new ReservationChangedEvent("r", null, null, START, START.plusDays(10)));
+        Assert.assertTrue(index.findAvailableRanges(START.plusDays(2), START.plusDays(5)).isEmpty());
+        Assert.assertEquals(new TimeRangeResource(START.plusDays(10), START.plusDays(12)),
+                index.findAvailableRanges(START.plusDays(5), START.plusDays(12)).get(0));
+    }
+
+    private void assertSameRanges(FreeIntervalIndex index, List<Reservation> sortedReservations) {
+        List<TimeRangeResource> ranges = new ArrayList<>();
+        List<List<TimeRangeResource>> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            LocalDate from = START.plusDays(random.nextInt(130) - 5);
+            LocalDate to = from.plusDays(1 + random.nextInt(40));
+            Assert.assertEquals(sweep(sortedReservations, from, to), index.findAvailableRanges(from, to));
+
+            ranges.add(new TimeRangeResource(from, to));
+            expected.add(sweep(sortedReservations, from, to));
+        }
+
+        //All the ranges at once, overlapping and unsorted
+        Assert.assertEquals(expected, index.findAvailableRanges(ranges));
+    }
+
+    /**
+     * Adds a reservation of 1 to 3 nights in a random free period, if the period picked is free
+     */
+    private Reservation addRandomReservation(List<Reservation> reservations, String id) {
+        LocalDate arrivalDate = START.plusDays(random.nextInt(120));
+        LocalDate departureDate = arrivalDate.plusDays(1 + random.nextInt(3));
+        for (Reservation reservation : reservations) {
+            if (reservation.getArrivalDate().isBefore(departureDate) && reservation.getDepartureDate().isAfter(arrivalDate)) {
+                return null;
+            }
+        }
+
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        reservation.setArrivalDate(arrivalDate);
+        reservation.setDepartureDate(departureDate);
+        reservations.add(reservation);
+        return reservation;
+    }
+
+    /**
+     * Gets the periods of the reservations, as read by the repository projection
+     */
+    private static List<ReservationPeriod> periods(List<Reservation> reservations) {
+        List<ReservationPeriod> periods = new ArrayList<>();
+        for (Reservation reservation : reservations) {
+            periods.add(new ReservationPeriod() {
+                @Override
+                public LocalDate getArrivalDate() {
+                    return reservation.getArrivalDate();
+                }
+
+                @Override
+                public LocalDate getDepartureDate() {
+                    return reservation.getDepartureDate();
+                }
+            });
+        }
+        return periods;
+    }
+
+    /**
+     * Computes the free periods of a range from the reservations sorted by arrival date
+     */
+    private static List<TimeRangeResource> sweep(List<Reservation> sortedReservations, LocalDate from, LocalDate to) {
+        List<TimeRangeResource> availableRanges = new ArrayList<>();
+        availableRanges.add(new TimeRangeResource(from, to));
+
+        for (Reservation reservation : sortedReservations) {
+            if (!reservation.getDepartureDate().isAfter(from) || !reservation.getArrivalDate().isBefore(to)) {
+                continue; //Not overlapping the range
+            }
+            TimeRangeResource lastAvailableRange = availableRanges.remove(availableRanges.size() - 1);
+            if (lastAvailableRange.getFrom().isBefore(reservation.getArrivalDate())) {
+                availableRanges.add(new TimeRangeResource(lastAvailableRange.getFrom(), reservation.getArrivalDate()));
+            }
+            if (reservation.getDepartureDate().isBefore(lastAvailableRange.getTo())) {
+                availableRanges.add(new TimeRangeResource(reservation.getDepartureDate(), lastAvailableRange.getTo()));
+            }
+        }
+
+        return availableRanges;
+    }
+}
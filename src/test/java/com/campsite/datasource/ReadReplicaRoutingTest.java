@@ -0,0 +1,117 @@
+package com.campsite.datasource;
+
+import com.campsite.UpgradeApplication;
+import com.campsite.reservation.ReservationCache;
+import com.campsite.reservation.ReservationResource;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.servlet.http.Cookie;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.time.LocalDate;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.cookie;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Runs the application on two H2 databases, a primary and a replica that is never updated, so each read shows
+ * where it was routed
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.MOCK, classes = UpgradeApplication.class, properties = {
+        "spring.datasource.url=jdbc:h2:mem:routing-primary;DB_CLOSE_ON_EXIT=FALSE",
+        "campsite.datasource.replica-urls=" + ReadReplicaRoutingTest.REPLICA_URL,
+        "campsite.datasource.read-your-writes.pin-ms=60000"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+public class ReadReplicaRoutingTest {
+
+    static final String REPLICA_URL = "jdbc:h2:mem:routing-replica;DB_CLOSE_DELAY=-1";
+
+    private static final String REPLICA_ONLY_ID = "5b4107f3-438c-4b89-a3ba-27b7044220ff";
+
+    private static Connection replica;
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private ReservationCache reservationCache;
+
+    @BeforeClass
+    public static void createReplica() throws Exception {
+        replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+        try (Statement statement = replica.createStatement()) {
+            statement.execute("RUNSCRIPT FROM 'classpath:schema.sql'");
+            statement.execute("INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date) "
+                    + "VALUES (X'5b4107f3438c4b89a3ba27b7044220ff', 'Only In Replica', 'replica@gmail.com', '2018-12-10', '2018-12-12')");
+        }
+    }
+
+    @AfterClass
+    public static void dropReplica() throws Exception {
+        try (Statement statement = replica.createStatement()) {
+            statement.execute("DROP ALL OBJECTS");
+        }
+        replica.close();
+    }
+
+    @Test
+    public void testReadsGoToReplicaUntilClientWrites() throws Exception {
+        //What is read from the replica is not cached, it is read from the replica every time
+        long misses = reservationCache.getMisses();
+        for (int i = 0; i < 2; i++) {
+            mvc.perform(get("/campsite/reservation/{id}", REPLICA_ONLY_ID))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.guestName").value("Only In Replica"));
+        }
+        Assert.assertEquals(misses + 2, reservationCache.getMisses());
+
+        ReservationResource reservation = new ReservationResource();
+        reservation.setGuestName("Diego Rivera");
+        reservation.setGuestMail("diegor@gmail.com");
+        reservation.setArrivalDate(LocalDate.now().plusDays(5));
+        reservation.setDepartureDate(LocalDate.now().plusDays(7));
+
+        MvcResult result = mvc.perform(post("/campsite/reservation")
+                        .accept("application/campsite-reservation-response-v1-hal+json")
+                        .contentType("application/campsite-reservation-v1-hal+json")
+                        .content(objectMapper.writeValueAsString(reservation)))
+                .andExpect(status().isCreated())
+                .andExpect(cookie().exists(ReadYourWritesInterceptor.COOKIE))
+                .andReturn();
+        String reservationId = objectMapper.readValue(result.getResponse().getContentAsString(), ReservationResource.class).getReservationId();
+        Cookie pin = result.getResponse().getCookie(ReadYourWritesInterceptor.COOKIE);
+
+        //The replica does not have the new reservation, but this node cached it when it was made
+        mvc.perform(get("/campsite/reservation/{id}", reservationId))
+                .andExpect(status().isOk());
+
+        //The client that made it skips the cache and reads from the primary
+        mvc.perform(get("/campsite/reservation/{id}", reservationId).cookie(pin))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.guestName").value("Diego Rivera"));
+        mvc.perform(get("/campsite/reservation/{id}", REPLICA_ONLY_ID).cookie(pin))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,73 @@
+package com.campsite.idempotency;
+
+import com.campsite.exception.IdempotencyConflictException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.Assert;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class IdempotencyServiceTest {
+
+    @Test
+    public void testUnserializableResponseIsNotExecutedAgain() {
+        IdempotencyService service = newService(new InMemoryIdempotencyStore(10));
+        AtomicInteger executions = new AtomicInteger();
+
+        service.execute("key", "POST /campsite/reservation", "body", () -> created(executions, new Unserializable()));
+
+        //The retry gets the status of the request made, without its body
+        ResponseEntity<Object> retry = service.execute("key", "POST /campsite/reservation", "body",
+                () -> created(executions, new Unserializable()));
+        Assert.assertEquals(1, executions.get());
+        Assert.assertEquals(HttpStatus.CREATED, retry.getStatusCode());
+        Assert.assertEquals("true", retry.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER));
+    }
+
+    @Test
+    public void testResponseNotStoredIsNotExecutedAgain() {
+        IdempotencyService service = newService(new InMemoryIdempotencyStore(10) {
+            @Override
+            public synchronized void complete(String key, int status, byte[] body) {
+                throw new IllegalStateException("Store not available");
+            }
+        });
+        AtomicInteger executions = new AtomicInteger();
+
+        service.execute("key", "POST /campsite/reservation", "body", () -> created(executions, "created"));
+
+        //The key is left in progress instead of released
+        try {
+            service.execute("key", "POST /campsite/reservation", "body", () -> created(executions, "created"));
+            Assert.fail("The request was executed again");
+        } catch (IdempotencyConflictException e) {
+            Assert.assertEquals(1, executions.get());
+        }
+    }
+
+    private static IdempotencyService newService(IdempotencyStore store) {
+        IdempotencyService service = new IdempotencyService();
+        ReflectionTestUtils.setField(service, "idempotencyStore", store);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "ttlMillis", 60000L);
+        return service;
+    }
+
+    private static ResponseEntity<Object> created(AtomicInteger executions, Object body) {
+        executions.incrementAndGet();
+        return new ResponseEntity<>(body, HttpStatus.CREATED);
+    }
+
+    /**
+     * Body that Jackson fails to serialize
+     */
+    public static class Unserializable {
+
+        public String getValue() {
+            throw new IllegalStateException("Not serializable");
+        }
+    }
+}
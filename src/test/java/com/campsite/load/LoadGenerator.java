@@ -0,0 +1,337 @@
+package com.campsite.load;
+
+import com.campsite.UpgradeApplication;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load generator for the campsite API
+ *
+ * Every client sends a request, waits for the response and sends the next one, picking the operation from
+ * a weighted mix: availability polling, bookings, moves (PATCH) and cancellations of its own reservations.
+ * Part of the bookings target the day that has just become bookable (30 days ahead), as happens when the
+ * window opens at midnight.
+ *
+ * Unless a target url is given, the application is started on an in-memory H2 database with the test profile.
+ * The settings are read from system properties (see the loadTest task in build.gradle):
+ *      - load.url: Base url of a running instance, e.g. http://localhost:8080
+ *      - load.clients: Number of concurrent clients (32)
+ *      - load.warmup: Seconds of load before measuring (10)
+ *      - load.duration: Seconds measured (60)
+ *      - load.mix: Weight of each operation (availability=70,book=15,move=10,cancel=5)
+ *      - load.stampede: Share of the bookings made on the day that has just opened (0.5)
+ *
+ * HttpURLConnection doesn't support PATCH, so moves are sent as POST with the _method=PATCH parameter,
+ * handled by the hidden method filter of Spring MVC.
+ */
+public class LoadGenerator {
+
+    private static final String AVAILABILITY_TYPE = "application/campsite-availability-response-v1-hal+json";
+    private static final String RESERVATION_RESPONSE_TYPE = "application/campsite-reservation-response-v1-hal+json";
+    private static final String RESERVATION_TYPE = "application/campsite-reservation-v1-hal+json";
+    private static final String RESERVATION_PATCH_TYPE = "application/campsite-reservation-patch-v1-hal+json";
+
+    /**
+     * Operations sent to the API
+     */
+    enum Operation {
+        AVAILABILITY, BOOK, MOVE, CANCEL
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final String baseUrl;
+
+    private final Map<Operation, Integer> mix;
+
+    private final double stampede;
+
+    private final Map<Operation, Stats> stats = new EnumMap<>(Operation.class);
+
+    private volatile boolean measuring;
+
+    private volatile boolean running = true;
+
+    LoadGenerator(String baseUrl, Map<Operation, Integer> mix, double stampede) {
+        this.baseUrl = baseUrl;
+        this.mix = mix;
+        this.stampede = stampede;
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new Stats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("load.url", "");
+        int clients = Integer.getInteger("load.clients", 32);
+        int warmup = Integer.getInteger("load.warmup", 10);
+        int duration = Integer.getInteger("load.duration", 60);
+        Map<Operation, Integer> mix = parseMix(System.getProperty("load.mix", "availability=70,book=15,move=10,cancel=5"));
+        double stampede = Double.parseDouble(System.getProperty("load.stampede", "0.5"));
+
+        ConfigurableApplicationContext context = null;
+        if (url.isEmpty()) {
+            context = new SpringApplicationBuilder(UpgradeApplication.class)
+                    .profiles("test")
+                    .run("--server.port=0", "--spring.jpa.show-sql=false", "--logging.level.root=WARN");
+            url = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+        }
+
+        try {
+            System.out.println("Running " + clients + " clients against " + url + " with mix " + mix + ", stampede " + stampede);
+            new LoadGenerator(url, mix, stampede).run(clients, warmup, duration);
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    void run(int clients, int warmupSeconds, int durationSeconds) throws InterruptedException {
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < clients; i++) {
+            Thread thread = new Thread(new Client(), "load-client-" + i);
+            threads.add(thread);
+            thread.start();
+        }
+
+        Thread.sleep(warmupSeconds * 1000L);
+        measuring = true;
+        long start = System.nanoTime();
+        Thread.sleep(durationSeconds * 1000L);
+        measuring = false;
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        running = false;
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        report(elapsedSeconds);
+    }
+
+    private void report(double elapsedSeconds) {
+        long total = 0;
+        for (Stats operationStats : stats.values()) {
+            total += operationStats.latencies.count();
+        }
+        System.out.printf("%nTotal: %d requests in %.1f s, %.1f req/s%n", total, elapsedSeconds, total / elapsedSeconds);
+
+        for (Map.Entry<Operation, Stats> entry : stats.entrySet()) {
+            Stats operationStats = entry.getValue();
+            LatencyHistogram latencies = operationStats.latencies;
+            long count = latencies.count();
+            if (count == 0) {
+                continue;
+            }
+
+            System.out.printf("%n%s: %d requests, %.1f req/s%n", entry.getKey(), count, count / elapsedSeconds);
+            System.out.printf("  status: 2xx=%d 400=%d (%.1f%%) 404=%d 503=%d other=%d io-errors=%d%n",
+                    operationStats.success.get(), operationStats.badRequest.get(), 100.0 * operationStats.badRequest.get() / count,
+                    operationStats.notFound.get(), operationStats.unavailable.get(), operationStats.other.get(), operationStats.ioErrors.get());
+            System.out.printf("  latency (ms): p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                    latencies.percentile(50) / 1000.0, latencies.percentile(90) / 1000.0, latencies.percentile(99) / 1000.0,
+                    latencies.percentile(99.9) / 1000.0, latencies.percentile(100) / 1000.0);
+
+            //Histogram in power of two buckets, from 1 ms up to the max
+            long previous = 0;
+            long max = latencies.percentile(100);
+            for (long bound = 1000; previous < count; bound *= 2) {
+                long below = latencies.countBelow(bound);
+                if (below > previous) {
+                    System.out.printf("  < %6d ms: %8d %5.1f%%%n", bound / 1000, below - previous, 100.0 * (below - previous) / count);
+                }
+                previous = below;
+                if (bound > max * 2) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new LinkedHashMap<>();
+        for (String weight : mix.split(",")) {
+            String[] parts = weight.trim().split("=");
+            weights.put(Operation.valueOf(parts[0].trim().toUpperCase()), Integer.parseInt(parts[1].trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * Client sending requests one after the other. It keeps the reservations it made to move or cancel them
+     */
+    private class Client implements Runnable {
+
+        private final List<String> reservationIds = new ArrayList<>();
+
+        @Override
+        public void run() {
+            while (running) {
+                Operation operation = pickOperation();
+                if ((operation == Operation.MOVE || operation == Operation.CANCEL) && reservationIds.isEmpty()) {
+                    operation = Operation.BOOK;
+                }
+
+                long start = System.nanoTime();
+                int status;
+                try {
+                    status = send(operation);
+                } catch (IOException e) {
+                    status = -1;
+                }
+                long micros = (System.nanoTime() - start) / 1000;
+
+                if (measuring) {
+                    stats.get(operation).record(status, micros);
+                }
+            }
+        }
+
+        private Operation pickOperation() {
+            int total = 0;
+            for (int weight : mix.values()) {
+                total += weight;
+            }
+            int pick = ThreadLocalRandom.current().nextInt(total);
+            for (Map.Entry<Operation, Integer> weight : mix.entrySet()) {
+                pick -= weight.getValue();
+                if (pick < 0) {
+                    return weight.getKey();
+                }
+            }
+            return Operation.AVAILABILITY;
+        }
+
+        private int send(Operation operation) throws IOException {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            switch (operation) {
+                case BOOK: {
+                    LocalDate arrivalDate = (random.nextDouble() < stampede)
+                            ? LocalDate.now().plusDays(30)
+                            : LocalDate.now().plusDays(1 + random.nextInt(30));
+                    Response response = request("POST", "/campsite/reservation", RESERVATION_TYPE,
+                            body(arrivalDate, arrivalDate.plusDays(1 + random.nextInt(3))));
+                    if (response.status == 201) {
+                        reservationIds.add(objectMapper.readTree(response.body).path("reservationId").asText());
+                    }
+                    return response.status;
+                }
+                case MOVE: {
+                    String id = reservationIds.get(random.nextInt(reservationIds.size()));
+                    LocalDate arrivalDate = LocalDate.now().plusDays(1 + random.nextInt(30));
+                    return request("POST", "/campsite/reservation/" + id + "?_method=PATCH", RESERVATION_PATCH_TYPE,
+                            body(arrivalDate, arrivalDate.plusDays(1 + random.nextInt(3)))).status;
+                }
+                case CANCEL: {
+                    String id = reservationIds.remove(random.nextInt(reservationIds.size()));
+                    return request("DELETE", "/campsite/reservation/" + id, null, null).status;
+                }
+                default: {
+                    LocalDate from = LocalDate.now().plusDays(random.nextInt(30));
+                    return request("GET", "/campsite/availability?from=" + from + "&to=" + from.plusDays(1 + random.nextInt(30)),
+                            null, null).status;
+                }
+            }
+        }
+
+        private String body(LocalDate arrivalDate, LocalDate departureDate) {
+            return "{\"guestName\":\"Load Client\",\"guestMail\":\"load@gmail.com\",\"arrivalDate\":\"" + arrivalDate
+                    + "\",\"departureDate\":\"" + departureDate + "\"}";
+        }
+
+        private Response request(String method, String path, String contentType, String body) throws IOException {
+            HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+            connection.setRequestMethod(method);
+            connection.setRequestProperty("Accept", path.contains("availability") ? AVAILABILITY_TYPE : RESERVATION_RESPONSE_TYPE);
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", contentType);
+                try (OutputStream output = connection.getOutputStream()) {
+                    output.write(body.getBytes(StandardCharsets.UTF_8));
+                }
+            }
+
+            int status = connection.getResponseCode();
+            //Read the whole body so the connection is kept alive
+            InputStream input = (status >= 400) ? connection.getErrorStream() : connection.getInputStream();
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            if (input != null) {
+                try (InputStream stream = input) {
+                    byte[] buffer = new byte[4096];
+                    int read;
+                    while ((read = stream.read(buffer)) >= 0) {
+                        content.write(buffer, 0, read);
+                    }
+                }
+            }
+            return new Response(status, content.toString("UTF-8"));
+        }
+    }
+
+    private static class Response {
+
+        private final int status;
+
+        private final String body;
+
+        Response(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Results of an operation
+     */
+    private static class Stats {
+
+        private final LatencyHistogram latencies = new LatencyHistogram();
+
+        private final AtomicLong success = new AtomicLong();
+
+        private final AtomicLong badRequest = new AtomicLong();
+
+        private final AtomicLong notFound = new AtomicLong();
+
+        private final AtomicLong unavailable = new AtomicLong();
+
+        private final AtomicLong other = new AtomicLong();
+
+        private final AtomicLong ioErrors = new AtomicLong();
+
+        void record(int status, long micros) {
+            latencies.record(micros);
+            if (status < 0) {
+                ioErrors.incrementAndGet();
+            } else if (status < 300) {
+                success.incrementAndGet();
+            } else if (status == 400) {
+                badRequest.incrementAndGet();
+            } else if (status == 404) {
+                notFound.incrementAndGet();
+            } else if (status == 503) {
+                unavailable.incrementAndGet();
+            } else {
+                other.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.campsite.reservation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ReservationCacheTest {
+
+    @Test
+    public void testReservationsAreReadThroughAndWrittenThrough() {
+        ReservationCache cache = new ReservationCache(10, 60000);
+        AtomicInteger loads = new AtomicInteger();
+
+        Reservation stored = reservation("a", 0L);
+        Assert.assertSame(stored, cache.get("a", () -> load(loads, stored)).get());
+        Assert.assertSame(stored, cache.get("a", () -> load(loads, stored)).get());
+        Assert.assertEquals(1, loads.get());
+
+        //An update replaces the entry, and a deletion is remembered
+        Reservation updated = reservation("a", 1L);
+        cache.put(updated);
+        Assert.assertSame(updated, cache.get("a", () -> load(loads, stored)).get());
+        cache.deleted("a");
+        Assert.assertFalse(cache.get("a", () -> load(loads, stored)).isPresent());
+        Assert.assertEquals(1, loads.get());
+
+        //The ones that don't exist are loaded every time
+        cache.get("b", () -> load(loads, null));
+        cache.get("b", () -> load(loads, null));
+        Assert.assertEquals(3, loads.get());
+        Assert.assertEquals(3, cache.getHits());
+        Assert.assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testLoadDoesNotOverwriteWrite() {
+        ReservationCache cache = new ReservationCache(10, 60000);
+        Reservation updated = reservation("a", 1L);
+
+        //The reservation is updated while an older version is being loaded
+        Optional<Reservation> loaded = cache.get("a", () -> {
+            cache.put(updated);
+            return Optional.of(reservation("a", 0L));
+        });
+        Assert.assertEquals(Long.valueOf(0L), loaded.get().getVersion());
+        Assert.assertSame(updated, cache.get("a", Optional::empty).get());
+    }
+
+    @Test
+    public void testReplicaReadIsNotStored() {
+        ReservationCache cache = new ReservationCache(10, 60000);
+        AtomicInteger loads = new AtomicInteger();
+        Reservation stored = reservation("a", 0L);
+
+        //Read from a replica, it is loaded every time
+        cache.get("a", () -> load(loads, stored), false);
+        cache.get("a", () -> load(loads, stored), false);
+        Assert.assertEquals(2, loads.get());
+        Assert.assertEquals(0, cache.getSize());
+
+        //A write of this node is still served
+        Reservation updated = reservation("a", 1L);
+        cache.put(updated);
+        Assert.assertSame(updated, cache.get("a", () -> load(loads, stored), false).get());
+        Assert.assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void testVersionIsReadWithoutLoading() {
+        ReservationCache cache = new ReservationCache(10, 60000);
+        AtomicInteger loads = new AtomicInteger();
+        Assert.assertNull(cache.getVersion("a"));
+
+        cache.get("a", () -> load(loads, reservation("a", 0L)));
+        Assert.assertEquals(Long.valueOf(0L), cache.getVersion("a"));
+        cache.put(reservation("a", 1L));
+        Assert.assertEquals(Long.valueOf(1L), cache.getVersion("a"));
+        cache.deleted("a");
+        Assert.assertNull(cache.getVersion("a"));
+        Assert.assertEquals(1, loads.get());
+
+        //Expired entries have no version
+        ReservationCache expiring = new ReservationCache(10, 0);
+        expiring.put(reservation("a", 0L));
+        Assert.assertNull(expiring.getVersion("a"));
+    }
+
+    private static Reservation reservation(String id, Long version) {
+        Reservation reservation = new Reservation();
+        reservation.setId(id);
+        reservation.setVersion(version);
+        return reservation;
+    }
+
+    private static Optional<Reservation> load(AtomicInteger loads, Reservation reservation) {
+        loads.incrementAndGet();
+        return Optional.ofNullable(reservation);
+    }
+}
@@ -0,0 +1,86 @@
+package com.campsite.reservation;
+
+import com.campsite.exception.CalendarBusyException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+public class ReservationGroupCommitterTest {
+
+    @Test
+    public void testReservationsQueuedTogetherAreWrittenInOneGroup() throws Exception {
+        List<Integer> groupSizes = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch firstGroup = new CountDownLatch(1);
+        ReservationGroupCommitter committer = new ReservationGroupCommitter(items -> {
+            groupSizes.add(items.size());
+            try {
+                firstGroup.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            //Reject every second reservation of the group
+            for (int i = 0; i < items.size(); i++) {
+                if (i % 2 == 0) {
+                    items.get(i).created();
+                } else {
+                    items.get(i).rejected("Rejected");
+                }
+            }
+        }, 4, 1, 100);
+
+        try {
+            //The first one is written alone, the rest are queued meanwhile and written in groups of at most 4
+            List<CompletableFuture<ReservationBatchItem>> results = new ArrayList<>();
+            results.add(committer.submit(new Reservation()));
+            while (groupSizes.isEmpty()) {
+                Thread.sleep(1);
+            }
+            for (int i = 0; i < 6; i++) {
+                results.add(committer.submit(new Reservation()));
+            }
+            firstGroup.countDown();
+
+            for (CompletableFuture<ReservationBatchItem> result : results) {
+                Assert.assertNotNull(result.get(5, TimeUnit.SECONDS).getStatus());
+            }
+            Assert.assertEquals(Integer.valueOf(1), groupSizes.get(0));
+            Assert.assertEquals(Integer.valueOf(4), groupSizes.get(1));
+            Assert.assertEquals(Integer.valueOf(2), groupSizes.get(2));
+            Assert.assertEquals(ReservationBatchItem.Status.CREATED, results.get(1).get().getStatus());
+            Assert.assertEquals(ReservationBatchItem.Status.REJECTED, results.get(2).get().getStatus());
+        } finally {
+            committer.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailedGroupFailsEveryReservationNotRejected() throws Exception {
+        ReservationGroupCommitter committer = new ReservationGroupCommitter(items -> {
+            items.get(0).rejected("Rejected");
+            items.get(1).created();
+            throw new CalendarBusyException("Busy");
+        }, 2, 1000, 100);
+
+        try {
+            CompletableFuture<ReservationBatchItem> rejected = committer.submit(new Reservation());
+            CompletableFuture<ReservationBatchItem> failed = committer.submit(new Reservation());
+
+            Assert.assertEquals(ReservationBatchItem.Status.REJECTED, rejected.get(5, TimeUnit.SECONDS).getStatus());
+            try {
+                failed.get(5, TimeUnit.SECONDS);
+                Assert.fail("The reservation should fail with the exception of its group");
+            } catch (ExecutionException e) {
+                Assert.assertTrue(e.getCause() instanceof CalendarBusyException);
+            }
+        } finally {
+            committer.shutdown();
+        }
+    }
+}
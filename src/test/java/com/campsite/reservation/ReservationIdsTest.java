@@ -0,0 +1,86 @@
+package com.campsite.reservation;
+
+import com.campsite.exception.ReservationNotFoundException;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+public class ReservationIdsTest {
+
+    @Test
+    public void testTimeOrderedIdsAreCompactAndSorted() {
+        TimeOrderedReservationIdGenerator generator = new TimeOrderedReservationIdGenerator(3);
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            ids.add(generator.next());
+        }
+
+        Assert.assertEquals(ids.size(), new HashSet<>(ids).size());
+        for (int i = 0; i < ids.size(); i++) {
+            String id = ids.get(i);
+            Assert.assertEquals(ReservationIds.BASE62_LENGTH, id.length());
+            Assert.assertEquals(id, ReservationIds.parse(id));
+            Assert.assertEquals(id, ReservationIds.fromBytes(ReservationIds.toBytes(id)));
+            if (i > 0) {
+                Assert.assertTrue(ids.get(i - 1).compareTo(id) < 0);
+            }
+        }
+    }
+
+    @Test
+    public void testBase62RoundTrip() {
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            //Any value that is not a random UUID is shown in base62
+            long mostSignificantBits = (random.nextLong() & ~0xF000L) | 0x7000L;
+            long leastSignificantBits = random.nextLong();
+
+            String id = ReservationIds.toString(mostSignificantBits, leastSignificantBits);
+            byte[] bytes = ReservationIds.toBytes(id);
+            Assert.assertEquals(16, bytes.length);
+            Assert.assertEquals(id, ReservationIds.fromBytes(bytes));
+            Assert.assertEquals(id, ReservationIds.parse(id));
+        }
+
+        Assert.assertEquals("0000000000000000000000", ReservationIds.toString(0, 0));
+        Assert.assertEquals("7n42DGM5Tflk9n8mt7Fhc7", ReservationIds.toString(-1, -1));
+    }
+
+    @Test
+    public void testLegacyUuidsKeepTheirForm() {
+        String legacy = "5b4107f3-438c-4b89-a3ba-27b7044220bd";
+
+        Assert.assertEquals(legacy, ReservationIds.parse(legacy));
+        Assert.assertEquals(legacy, ReservationIds.parse(legacy.toUpperCase()));
+        Assert.assertEquals(legacy, ReservationIds.fromBytes(ReservationIds.toBytes(legacy)));
+
+        String random = new RandomReservationIdGenerator().next();
+        Assert.assertEquals(UUID.fromString(random).toString(), random);
+    }
+
+    @Test
+    public void testInvalidIdsAreNotFound() {
+        String[] invalid = {
+                "aaaaaa",
+                "",
+                "zzzzzzzzzzzzzzzzzzzzzz", //Larger than 128 bits
+                "0000000000000000000-00",
+                "5b4107f3-438c-7b89-a3ba-27b7044220bd", //Only random UUIDs are shown in this form
+                "000000001Vg3hltyXNOOy8" //Same value as 00000000-0000-4000-0000-000000000000
+        };
+        for (String id : invalid) {
+            try {
+                ReservationIds.parse(id);
+                Assert.fail(id);
+            } catch (ReservationNotFoundException e) {
+                //Expected
+            }
+        }
+    }
+}
@@ -1,9 +1,25 @@
-INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date) VALUES ('5b4107f3-438c-4b89-a3ba-27b7044220bd', 'Ali Bize', 'aaa@gmail.com', '2018-12-01', '2018-12-03');
-INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date) VALUES ('5b4107f3-438c-4b89-a3ba-27b7044220be', 'Diego Fons', 'diego@gmail.com', '2018-12-05', '2018-12-08');
-
-INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date) VALUES ('5b4107f3-438c-4b89-a3ba-27b7044220aa', 'Diego Fons', 'diego@gmail.com', '2017-01-05', '2017-01-08');
-INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date) VALUES ('5b4107f3-438c-4b89-a3ba-27b7044220bb', 'Diego Fons', 'diego@gmail.com', '2017-01-09', '2017-01-11');
-INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date) VALUES ('5b4107f3-438c-4b89-a3ba-27b7044220cc', 'Diego Fons', 'diego@gmail.com', '2017-01-15', '2017-01-18');
-INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date) VALUES ('5b4107f3-438c-4b89-a3ba-27b7044220dd', 'Diego Fons', 'diego@gmail.com', '2017-01-18', '2017-01-22');
+INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date) VALUES (X'5b4107f3438c4b89a3ba27b7044220bd', 'Ali Bize', 'aaa@gmail.com', '2018-12-01', '2018-12-03');
+INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date) VALUES (X'5b4107f3438c4b89a3ba27b7044220be', 'Diego Fons', 'diego@gmail.com', '2018-12-05', '2018-12-08');
 
+INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date) VALUES (X'5b4107f3438c4b89a3ba27b7044220aa', 'Diego Fons', 'diego@gmail.com', '2017-01-05', '2017-01-08');
+INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date) VALUES (X'5b4107f3438c4b89a3ba27b7044220bb', 'Diego Fons', 'diego@gmail.com', '2017-01-09', '2017-01-11');
+INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date) VALUES (X'5b4107f3438c4b89a3ba27b7044220cc', 'Diego Fons', 'diego@gmail.com', '2017-01-15', '2017-01-18');
+INSERT INTO reservations (id, guest_name, guest_mail, arrival_date, departure_date) VALUES (X'5b4107f3438c4b89a3ba27b7044220dd', 'Diego Fons', 'diego@gmail.com', '2017-01-18', '2017-01-22');
 
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2018-12-01', X'5b4107f3438c4b89a3ba27b7044220bd');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2018-12-02', X'5b4107f3438c4b89a3ba27b7044220bd');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2018-12-05', X'5b4107f3438c4b89a3ba27b7044220be');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2018-12-06', X'5b4107f3438c4b89a3ba27b7044220be');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2018-12-07', X'5b4107f3438c4b89a3ba27b7044220be');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2017-01-05', X'5b4107f3438c4b89a3ba27b7044220aa');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2017-01-06', X'5b4107f3438c4b89a3ba27b7044220aa');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2017-01-07', X'5b4107f3438c4b89a3ba27b7044220aa');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2017-01-09', X'5b4107f3438c4b89a3ba27b7044220bb');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2017-01-10', X'5b4107f3438c4b89a3ba27b7044220bb');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2017-01-15', X'5b4107f3438c4b89a3ba27b7044220cc');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2017-01-16', X'5b4107f3438c4b89a3ba27b7044220cc');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2017-01-17', X'5b4107f3438c4b89a3ba27b7044220cc');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2017-01-18', X'5b4107f3438c4b89a3ba27b7044220dd');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2017-01-19', X'5b4107f3438c4b89a3ba27b7044220dd');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2017-01-20', X'5b4107f3438c4b89a3ba27b7044220dd');
+INSERT INTO reservation_nights (night, reservation_id) VALUES ('2017-01-21', X'5b4107f3438c4b89a3ba27b7044220dd');